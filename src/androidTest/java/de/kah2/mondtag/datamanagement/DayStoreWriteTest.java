@@ -0,0 +1,117 @@
+package de.kah2.mondtag.datamanagement;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.kah2.zodiac.libZodiac4A.Calendar;
+import de.kah2.zodiac.libZodiac4A.DateRange;
+import de.kah2.zodiac.libZodiac4A.Day;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures {@link DayStore#write(LocationProfile, List)} for one and ten years of days using a
+ * separate database. The durations are logged - the test only fails if days are missing.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DayStoreWriteTest {
+
+    private final static String TAG = DayStoreWriteTest.class.getSimpleName();
+
+    private final static String DATABASE_NAME = "de.kah2.mondtag.test.db";
+
+    private final static LocationProfile PROFILE =
+            new LocationProfile( DataManager.DEFAULT_LOCATION_MUNICH, ZoneId.of("Europe/Berlin") );
+
+    private final static LocalDate START = LocalDate.of(2020, 1, 1);
+
+    /** One generated year - longer ranges repeat it with shifted dates */
+    private static List<Day> generatedYear;
+
+    private Context context;
+
+    private DayStore store;
+
+    @BeforeClass
+    public static void generateYear() {
+
+        final Calendar calendar = new Calendar(
+                new DateRange( START, START.plusDays(364) ), Calendar.Scope.DAY, PROFILE );
+        calendar.startGeneration();
+
+        generatedYear = new ArrayList<>( calendar.getNewlyGenerated() );
+    }
+
+    @Before
+    public void openStore() {
+
+        this.context = ApplicationProvider.getApplicationContext();
+        this.context.deleteDatabase(DATABASE_NAME);
+
+        this.store = new DayStore( new DatabaseConnection(this.context, DATABASE_NAME) );
+    }
+
+    @After
+    public void deleteStore() {
+        this.store.close();
+        this.context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void writeOneYear() {
+        this.measureWrite(365);
+    }
+
+    @Test
+    public void writeTenYears() {
+        this.measureWrite(3650);
+    }
+
+    private void measureWrite(int count) {
+
+        final List<DatabaseDayEntry> entries = createEntries(count);
+
+        final long start = System.nanoTime();
+
+        final int written = this.store.write(PROFILE, entries);
+
+        Log.i(TAG, "measureWrite: wrote " + written + " days in "
+                + (System.nanoTime() - start) / 1000000 + "ms");
+
+        assertEquals(count, written);
+
+        final DateRange range = new DateRange( START, START.plusDays(count - 1) );
+        assertEquals( count, this.store.load(PROFILE, range).size() );
+    }
+
+    /** @return snapshots of the generated year, repeated with consecutive dates */
+    private static List<DatabaseDayEntry> createEntries(int count) {
+
+        final List<DatabaseDayEntry> entries = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+
+            final DatabaseDayEntry entry =
+                    new DatabaseDayEntry( generatedYear.get(i % generatedYear.size()) );
+            entry.setDate( START.plusDays(i) );
+
+            entries.add(entry);
+        }
+
+        return entries;
+    }
+}
@@ -1,6 +1,8 @@
 package de.kah2.mondtag;
 
 import android.app.Application;
+import android.content.pm.ApplicationInfo;
+import android.os.StrictMode;
 import android.util.Log;
 
 import de.kah2.mondtag.calendar.InterpreterManager;
@@ -25,11 +27,53 @@ public class Mondtag extends Application {
 
         Log.d(LOG_TAG, "######### onCreate called ############");
 
+        if ( (this.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0 ) {
+            enableStrictMode();
+        }
+
         InterpreterManager.init(this);
 
         this.dataManager= new DataManager(this);
     }
 
+    /**
+     * Reports disk access on the main thread in debug builds - database operations must be done
+     * through the data layer's I/O thread.
+     * SharedPreferences are still loaded on the main thread on first access, so violations are
+     * only logged instead of killing the app.
+     */
+    private static void enableStrictMode() {
+
+        Log.d(LOG_TAG, "enableStrictMode: detecting disk reads and writes on main thread");
+
+        StrictMode.setThreadPolicy( new StrictMode.ThreadPolicy.Builder()
+                .detectDiskReads()
+                .detectDiskWrites()
+                .penaltyLog()
+                .build() );
+
+        StrictMode.setVmPolicy( new StrictMode.VmPolicy.Builder()
+                .detectLeakedSqlLiteObjects()
+                .detectLeakedClosableObjects()
+                .penaltyLog()
+                .build() );
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        Log.d(LOG_TAG, "onTrimMemory: level " + level);
+        this.dataManager.onTrimMemory(level);
+    }
+
+    /** Only called in emulated environments - on devices the process simply gets killed. */
+    @Override
+    public void onTerminate() {
+        this.dataManager.onTerminate();
+        super.onTerminate();
+    }
+
     public DataManager getDataManager() {
 
         return dataManager;
@@ -15,7 +15,6 @@ import de.kah2.mondtag.calendar.DayDetailFragment;
 import de.kah2.mondtag.datamanagement.DataFetchingFragment;
 import de.kah2.mondtag.datamanagement.DataManager;
 import de.kah2.mondtag.settings.SettingsFragment;
-import de.kah2.zodiac.libZodiac4A.Calendar;
 import de.kah2.zodiac.libZodiac4A.Day;
 
 /**
@@ -124,7 +123,7 @@ public class MondtagActivity extends AppCompatActivity {
             return;
         }
 
-        if ( ! this.getDataManager().getCalendar().isComplete() ) {
+        if ( ! this.getDataManager().isCalendarComplete() ) {
 
             Log.d(TAG, "initActivity: data is incomplete - generating");
             // days are missing in expected date range => we start fetching data
@@ -158,7 +157,8 @@ public class MondtagActivity extends AppCompatActivity {
     }
 
     /**
-     * Called when button to calculate more days is clicked
+     * Called when button to calculate more days is clicked. If the calendar is already extended in
+     * background, the progress of that extension is displayed.
      * @see de.kah2.mondtag.calendar.DayRecyclerViewAdapter
      */
     public void extendFuture() {
@@ -325,12 +325,11 @@ public class MondtagActivity extends AppCompatActivity {
 
         if (this.state == State.CONFIGURING) {
 
-            // User comes back from configuration
+            // User comes back from configuration - changes are applied all at once
             this.getDataManager().setConfigReviewed();
+            this.getDataManager().commitConfigTransaction();
 
-            final Calendar calendar = this.getDataManager().getCalendar();
-
-            if (calendar == null || !calendar.isComplete()) {
+            if ( !this.getDataManager().isCalendarComplete() ) {
                 this.activateDataFetching();
             } else {
                 this.activateCalendarView();
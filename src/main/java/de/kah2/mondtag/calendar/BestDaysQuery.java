@@ -0,0 +1,103 @@
+package de.kah2.mondtag.calendar;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.kah2.zodiac.libZodiac4A.interpretation.Interpreter.Quality;
+
+/**
+ * An immutable query for {@link BestDaysSearch}: which interpreters a day should be good for, the
+ * dates to search and an optional {@link DayFilter} on zodiac and lunar attributes. Queries are
+ * created using a {@link Builder}.
+ */
+class BestDaysQuery {
+
+    /** Maximum number of days returned */
+    private final static int LIMIT = 5;
+
+    /** The worst quality a day may have for any of the interpreters */
+    private final static Quality MIN_QUALITY = Quality.GOOD;
+
+    private final List<Integer> interpreterIds;
+
+    private final LocalDate from;
+    private final LocalDate to;
+
+    private final DayFilter filter;
+
+    private BestDaysQuery(Builder builder) {
+        this.interpreterIds = Collections.unmodifiableList( new ArrayList<>(builder.interpreterIds) );
+        this.from = builder.from;
+        this.to = builder.to;
+        this.filter = builder.filter;
+    }
+
+    /** @return the ids of the interpreters a day must be good for - never empty */
+    List<Integer> getInterpreterIds() {
+        return this.interpreterIds;
+    }
+
+    /** @return the first date to search or null to search from the first available day */
+    LocalDate getFrom() {
+        return this.from;
+    }
+
+    /** @return the last date to search or null to search until the last available day */
+    LocalDate getTo() {
+        return this.to;
+    }
+
+    /** @return the worst quality a day may have for any of the interpreters */
+    Quality getMinQuality() {
+        return MIN_QUALITY;
+    }
+
+    /** @return the maximum number of days returned */
+    int getLimit() {
+        return LIMIT;
+    }
+
+    /** @return the filter days must match - {@link DayFilter#NONE} if there's none */
+    DayFilter getFilter() {
+        return this.filter;
+    }
+
+    static class Builder {
+
+        private final List<Integer> interpreterIds = new ArrayList<>();
+
+        private LocalDate from = null;
+        private LocalDate to = null;
+
+        private DayFilter filter = DayFilter.NONE;
+
+        Builder addInterpreter(int interpreterId) {
+            this.interpreterIds.add(interpreterId);
+            return this;
+        }
+
+        /** Restricts the search to the given dates - null values don't restrict that end */
+        Builder setDateRange(LocalDate from, LocalDate to) {
+            this.from = from;
+            this.to = to;
+            return this;
+        }
+
+        Builder setFilter(DayFilter filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /** @throws IllegalStateException if no interpreter was added */
+        BestDaysQuery build() {
+
+            if (this.interpreterIds.isEmpty()) {
+                throw new IllegalStateException("A query needs at least one interpreter");
+            }
+
+            return new BestDaysQuery(this);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package de.kah2.mondtag.calendar;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import de.kah2.mondtag.datamanagement.LocationProfile;
+import de.kah2.zodiac.libZodiac4A.Day;
+import de.kah2.zodiac.libZodiac4A.interpretation.Interpreter.Quality;
+
+/**
+ * <p>Answers questions like "when are the next five best days to sow and water?" for the stored
+ * days of the displayed profile - they usually cover more than the displayed calendar. Searches
+ * run on a background thread using a {@link CalendarIndex} of these days.</p>
+ * <p>Days are ranked by the worst quality they have for any of the queried interpreters - best
+ * first. Days of the same rank are sorted by date.</p>
+ */
+class BestDaysSearch {
+
+    private final static String TAG = BestDaysSearch.class.getSimpleName();
+
+    private final static Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final static Quality[] QUALITIES = Quality.values();
+
+    private BestDaysSearch() {}
+
+    /**
+     * Searches the best days in background.
+     * @param days valid days sorted by date - the list must not be modified afterwards
+     * @param profile the profile the days were calculated for
+     * @param callback receives the ranked days on the main thread
+     */
+    static void search(List<Day> days, LocationProfile profile, Context context,
+                       BestDaysQuery query, ResultCallback callback) {
+
+        CalendarIndex.executeDetached( days, profile, context, index -> {
+
+            final List<RankedDay> result = search(index, query);
+
+            mainHandler.post( () -> callback.onResult(result) );
+        });
+    }
+
+    private static List<RankedDay> search(CalendarIndex index, BestDaysQuery query) {
+
+        final long start = System.nanoTime();
+
+        final List<RankedDay> result = new ArrayList<>(query.getLimit());
+
+        if (index.size() == 0) {
+            return result;
+        }
+
+        final BitSet candidates = getCandidates(index, query);
+
+        // Days already ranked at a better quality
+        final BitSet ranked = new BitSet(index.size());
+
+        for (int q = QUALITIES.length - 1;
+             q >= query.getMinQuality().ordinal() && result.size() < query.getLimit(); q--) {
+
+            final BitSet level = (BitSet) candidates.clone();
+
+            for (int interpreterId : query.getInterpreterIds()) {
+
+                final BitSet atLeast = index.getAtLeast(interpreterId, QUALITIES[q]);
+
+                if (atLeast == null) {
+                    Log.w(TAG, "search: unknown interpreter " + interpreterId);
+                    level.clear();
+                } else {
+                    level.and(atLeast);
+                }
+            }
+
+            level.andNot(ranked);
+
+            for (int i = level.nextSetBit(0);
+                 i >= 0 && result.size() < query.getLimit(); i = level.nextSetBit(i + 1)) {
+                result.add( new RankedDay(index.getDay(i), QUALITIES[q]) );
+            }
+
+            ranked.or(level);
+        }
+
+        Log.d(TAG, "search: found " + result.size() + " days in "
+                + (System.nanoTime() - start) / 1000 + "µs");
+
+        return result;
+    }
+
+    /** @return the days within the date range of the query matching its filter */
+    private static BitSet getCandidates(CalendarIndex index, BestDaysQuery query) {
+
+        final LocalDate from = query.getFrom() == null ? index.getFirstDate() : query.getFrom();
+        final LocalDate to = query.getTo() == null ? index.getLastDate() : query.getTo();
+
+        final BitSet candidates = index.getRange(from, to);
+
+        candidates.and( index.getMatching(query.getFilter()) );
+
+        return candidates;
+    }
+
+    /** A day found by a search and the worst quality it has for the queried interpreters. */
+    static class RankedDay {
+
+        private final Day day;
+
+        private final Quality quality;
+
+        private RankedDay(Day day, Quality quality) {
+            this.day = day;
+            this.quality = quality;
+        }
+
+        Day getDay() {
+            return this.day;
+        }
+
+        Quality getQuality() {
+            return this.quality;
+        }
+    }
+
+    /** Receives the result of a search on the main thread. */
+    interface ResultCallback {
+        void onResult(List<RankedDay> rankedDays);
+    }
+}
@@ -67,7 +67,7 @@ class CalendarEvent {
     }
 
     private long getDateInMillis(LocalDate date) {
-        final ZoneId timeZoneId = ((Mondtag) context).getDataManager().getTimeZoneId();
+        final ZoneId timeZoneId = ((Mondtag) context).getDataManager().getCalendarTimeZoneId();
 
         final ZonedDateTime zonedDateTime = ZonedDateTime.of(
                 date, LocalTime.MIDNIGHT, timeZoneId );
@@ -76,14 +76,17 @@ class CalendarEvent {
     }
 
     private String createDescription(Day day) {
-        return getDayDataString( R.string.description_lunar_phase, day.getPlanetaryData().getLunarPhase() )
-                + getDayDataString( R.string.description_zodiac_sign, day.getZodiacData().getSign() )
-                + getDayDataString( R.string.description_zodiac_direction, day.getZodiacData().getDirection() )
-                + getDayDataString( R.string.description_zodiac_element, day.getZodiacData().getElement() );
+        return getDayDataString( R.string.description_lunar_phase,
+                    ResourceMapper.getStringId( day.getPlanetaryData().getLunarPhase() ) )
+                + getDayDataString( R.string.description_zodiac_sign,
+                    ResourceMapper.getStringId( day.getZodiacData().getSign() ) )
+                + getDayDataString( R.string.description_zodiac_direction,
+                    ResourceMapper.getStringId( day.getZodiacData().getDirection() ) )
+                + getDayDataString( R.string.description_zodiac_element,
+                    ResourceMapper.getStringId( day.getZodiacData().getElement() ) );
     }
 
-    private String getDayDataString(final int descriptionId, final Enum<?> key) {
-        final int id = ResourceMapper.getResourceIds( key )[ResourceMapper.INDEX_STRING];
-        return context.getString(descriptionId) + ": " + context.getString(id) + "\n";
+    private String getDayDataString(final int descriptionId, final int valueId) {
+        return context.getString(descriptionId) + ": " + context.getString(valueId) + "\n";
     }
 }
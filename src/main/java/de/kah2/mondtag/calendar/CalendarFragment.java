@@ -1,6 +1,10 @@
 package de.kah2.mondtag.calendar;
 
+import android.app.AlertDialog;
+import android.content.Context;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.Menu;
@@ -17,27 +21,57 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import java.time.LocalDate;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import de.kah2.mondtag.Mondtag;
 import de.kah2.mondtag.MondtagActivity;
 import de.kah2.mondtag.R;
 import de.kah2.mondtag.datamanagement.DataManager;
-import de.kah2.zodiac.libZodiac4A.Calendar;
+import de.kah2.mondtag.datamanagement.LocationProfile;
+import de.kah2.zodiac.libZodiac4A.DateRange;
 import de.kah2.zodiac.libZodiac4A.Day;
 
 /**
  * This {@link Fragment} is used to display the calendar.
+ * After a configuration change it keeps displaying the previous calendar - marked as stale - until
+ * the new one is complete. The calendar grows in both directions while scrolling and gets
+ * replaced by a smaller one around the visible days, if it gets too large.
+ * If a {@link DayFilter} is set, only the days matching it are shown - they're looked up using the
+ * {@link CalendarIndex}.
  */
 public class CalendarFragment extends Fragment
-        implements InterpretationMenuManager.InterpretationChangeListener {
+        implements InterpretationMenuManager.InterpretationChangeListener,
+        DataManager.CalendarChangeListener, InterpreterChoiceDialogFragment.ChoiceListener,
+        DayFilterDialogFragment.FilterListener {
 
     public final static String TAG = CalendarFragment.class.getSimpleName();
 
+    /** Number of days after today searched for the best days */
+    private final static int BEST_DAYS_SEARCH_DAYS = 365;
+
     private RecyclerView recyclerView;
     private DayRecyclerViewAdapter dayRecyclerViewAdapter;
 
+    /** The days currently shown - to detect swaps while paused */
+    private List<Day> displayedDays;
+
+    /** The date to scroll to when the next calendar is displayed - null to keep the position */
+    private LocalDate pendingScrollDate = null;
+
+    /** First and last date of the calendar passed to the adapter - filtered days included */
+    private LocalDate firstDisplayedDate = null;
+    private LocalDate lastDisplayedDate = null;
+
+    /** Counts calls of {@link #submitDays(Runnable)} to drop filter results of older calls */
+    private int submissionCount = 0;
+
+    /** The number of days matching the filter or -1 if there's no filter */
+    private int filteredDayCount = -1;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
     private final InterpretationMenuManager interpretationMenuManager =
             new InterpretationMenuManager();
 
@@ -56,6 +90,8 @@ public class CalendarFragment extends Fragment
         recyclerView.setAdapter(dayRecyclerViewAdapter);
         this.dayRecyclerViewAdapter.setClickListener( 
                 new DayClickListener((MondtagActivity) this.getActivity()) );
+        this.recyclerView.addOnScrollListener(
+                new PrefetchScrollListener(this.getDataManager(), this.dayRecyclerViewAdapter) );
 
         this.setHasOptionsMenu(true);
 
@@ -71,12 +107,19 @@ public class CalendarFragment extends Fragment
     public void onResume() {
         super.onResume();
         this.interpretationMenuManager.setInterpretationChangeListener(this);
+        this.getDataManager().setCalendarChangeListener(this);
+
+        // The swap might have happened while we were paused
+        if (this.getDataManager().getDisplayedDays() != this.displayedDays) {
+            this.updateCalendar();
+        }
     }
 
     @Override
     public void onPause() {
         super.onPause();
         this.interpretationMenuManager.resetInterpretationChangeListener();
+        this.getDataManager().setCalendarChangeListener(null);
     }
 
     private RecyclerView.LayoutManager createLayoutManager() {
@@ -116,6 +159,20 @@ public class CalendarFragment extends Fragment
         } else if (itemId == R.id.action_scroll_to_today) {
             this.scrollToToday();
             return true;
+        } else if (itemId == R.id.action_best_days) {
+            InterpreterChoiceDialogFragment.create( InterpreterChoiceDialogFragment.REQUEST_BEST_DAYS,
+                    Collections.singletonList(
+                            this.getDataManager().getSelectedInterpreterNameId() ) )
+                    .show( this.getChildFragmentManager() );
+            return true;
+        } else if (itemId == R.id.action_filter_days) {
+            new DayFilterDialogFragment().show( this.getChildFragmentManager() );
+            return true;
+        } else if (itemId == R.id.action_compare_interpretations) {
+            InterpreterChoiceDialogFragment.create( InterpreterChoiceDialogFragment.REQUEST_COMPARE,
+                    this.getComparedInterpreterIds() )
+                    .show( this.getChildFragmentManager() );
+            return true;
         } else if (itemId == R.id.menu_interpretations) {// Nothing to do
             return true;
         }
@@ -132,42 +189,323 @@ public class CalendarFragment extends Fragment
 
     private void updateCalendar() {
 
-        final LinkedList<Day> days = this.getDaysToDisplay();
-        this.dayRecyclerViewAdapter.setDays(days, getDataManager().getTimeZoneId());
-        this.scrollToToday(days);
+        // The index would keep the days of the previous calendar
+        CalendarIndex.reset();
+
+        // Keeps the first visible date, e.g. when the calendar got trimmed
+        LocalDate anchor = this.pendingScrollDate;
+        if (anchor == null) {
+            anchor = this.getFirstVisibleDate();
+        }
+        this.pendingScrollDate = null;
+
+        final LocalDate scrollDate = anchor;
+
+        this.submitDays( () -> {
+
+            if ( scrollDate == null || !this.isDisplayed(scrollDate) ) {
+                this.scrollTo( LocalDate.now() );
+            } else {
+                this.scrollTo(scrollDate);
+            }
+        });
+
+        this.updateSubtitle();
+    }
+
+    private LocalDate getFirstVisibleDate() {
+
+        final LinearLayoutManager layoutManager =
+                (LinearLayoutManager) this.recyclerView.getLayoutManager();
+
+        return this.dayRecyclerViewAdapter.getDate(
+                layoutManager.findFirstVisibleItemPosition() );
+    }
+
+    private void updateSubtitle() {
 
         final ActionBar actionBar = ((MondtagActivity) this.getActivity()).getSupportActionBar();
-        actionBar.setSubtitle( this.getDataManager().getSelectedInterpreterNameId() );
+
+        if ( this.getDataManager().isConfigurationChanging() ) {
+
+            // The new calendar gets generated in background while the old one is displayed
+            actionBar.setSubtitle(R.string.calendar_updating);
+
+        } else if (this.filteredDayCount >= 0) {
+
+            actionBar.setSubtitle( this.getString(R.string.calendar_filtered,
+                    this.filteredDayCount) );
+
+        } else {
+
+            actionBar.setSubtitle( this.getDataManager().getSelectedInterpreterNameId() );
+        }
     }
 
+    /** Displays the new calendar as soon as it's complete */
+    @Override
+    public void onCalendarSwapped() {
+
+        Log.d(TAG, "onCalendarSwapped: displaying new calendar");
+        this.updateCalendar();
+    }
+
+    /** Adds the days generated by a background extension before or after the displayed ones */
+    @Override
+    public void onCalendarExtended() {
+
+        final LinearLayoutManager layoutManager =
+                (LinearLayoutManager) this.recyclerView.getLayoutManager();
+
+        final int position = layoutManager.findFirstVisibleItemPosition();
+        final LocalDate firstVisible = this.dayRecyclerViewAdapter.getDate(position);
+        final View firstView = layoutManager.findViewByPosition(position);
+        final int offset = firstView == null ? 0 : firstView.getTop();
+
+        Log.d(TAG, "onCalendarExtended: updating days");
+
+        this.submitDays( () -> {
+
+            // Days inserted at the top would otherwise move the visible days down
+            final int newPosition = firstVisible == null ?
+                    -1 : this.dayRecyclerViewAdapter.getPosition(firstVisible);
+
+            if (newPosition > position) {
+                layoutManager.scrollToPositionWithOffset(newPosition, offset);
+            }
+        });
+    }
+
+    /**
+     * Scrolls to today. If today isn't part of the displayed calendar, a calendar around it gets
+     * created and displayed as soon as it's complete.
+     */
     public void scrollToToday() {
 
-        this.scrollToToday( this.getDaysToDisplay() );
+        final LocalDate today = LocalDate.now();
+
+        if ( !this.isDisplayed(today) && this.getDataManager().moveWindow(today, today) ) {
+
+            this.pendingScrollDate = today;
+            this.updateSubtitle();
+
+        } else {
+
+            this.scrollTo(today);
+        }
     }
 
-    private void scrollToToday(List<Day> days) {
+    /**
+     * Scrolls to the given date. If it's filtered out, the next displayed day is shown - if it's
+     * outside the calendar, its start.
+     */
+    private void scrollTo(LocalDate date) {
         final LinearLayoutManager layoutManager =
                 (LinearLayoutManager) this.recyclerView.getLayoutManager();
 
-        int count = 0;
+        final int position = this.isDisplayed(date) ?
+                Math.max(0, this.dayRecyclerViewAdapter.getNearestPosition(date)) : 0;
+
+        layoutManager.scrollToPositionWithOffset(position, 25);
+    }
+
+    /**
+     * Passes the days of the displayed calendar to the adapter, which prepares them for display in
+     * background. If a filter is set, the matching days are looked up in background first.
+     * @param commitCallback called when the days are displayed - may be null
+     */
+    private void submitDays(@Nullable Runnable commitCallback) {
+
+        final List<Day> days = this.getDaysToDisplay();
+        this.displayedDays = days;
+
+        final LocationProfile profile = this.getDataManager().getCalendarProfile();
+        final DayFilter filter = this.getDataManager().getDayFilter();
+
+        final int submission = ++this.submissionCount;
+
+        this.firstDisplayedDate = days.isEmpty() ? null : days.get(0).getDate();
+        this.lastDisplayedDate = days.isEmpty() ? null : days.get(days.size() - 1).getDate();
+
+        if ( filter.isEmpty() ) {
+            this.filteredDayCount = -1;
+            this.submitDays(days, profile, commitCallback);
+            return;
+        }
+
+        CalendarIndex.execute( days, profile, this.requireContext(), index -> {
+
+            final List<Day> matching = index.getDays( index.getMatching(filter) );
+
+            this.mainHandler.post( () -> {
+
+                // The days of a later call are already on their way
+                if (submission != this.submissionCount || !this.isAdded()) {
+                    return;
+                }
+
+                Log.d(TAG, "submitDays: " + matching.size() + " of " + days.size()
+                        + " days match the filter");
+
+                this.filteredDayCount = matching.size();
+                this.submitDays(matching, profile, commitCallback);
+                this.updateSubtitle();
+            });
+        });
+    }
+
+    private void submitDays(List<Day> days, LocationProfile profile,
+                            @Nullable Runnable commitCallback) {
+
+        this.dayRecyclerViewAdapter.submitDays( days, profile,
+                this.getDataManager().getSelectedInterpreter(),
+                this.getDataManager().getComparedInterpreters(),
+                this.requireContext(), commitCallback );
+    }
+
+    /** Displays the days already passed to the adapter using the current interpreters */
+    private void updateInterpreters() {
+
+        this.dayRecyclerViewAdapter.updateInterpreters(
+                this.getDataManager().getSelectedInterpreter(),
+                this.getDataManager().getComparedInterpreters(),
+                this.requireContext(), null );
+    }
+
+    /** @return true if the date is part of the displayed calendar - even if it's filtered out */
+    private boolean isDisplayed(LocalDate date) {
+        return this.firstDisplayedDate != null
+                && !date.isBefore(this.firstDisplayedDate)
+                && !date.isAfter(this.lastDisplayedDate);
+    }
+
+    /**
+     * @return the immutable days published by the displayed calendar, which allow fast access by
+     * index and can be passed to background threads
+     */
+    private List<Day> getDaysToDisplay() {
+        return this.getDataManager().getDisplayedDays();
+    }
+
+    @Override
+    public void onInterpretersChosen(int request, List<Integer> interpreterIds) {
+
+        if (request == InterpreterChoiceDialogFragment.REQUEST_COMPARE) {
+            this.onComparedInterpretersChanged(interpreterIds);
+        } else if ( !interpreterIds.isEmpty() ) {
+            this.searchBestDays(interpreterIds);
+        }
+    }
+
+    /**
+     * Searches the stored days of the next {@link #BEST_DAYS_SEARCH_DAYS} days for days that are at
+     * least good for all given interpreters - they don't need to be displayed. The search runs in
+     * background and the result is shown in a dialog.
+     */
+    private void searchBestDays(List<Integer> interpreterIds) {
+
+        Log.d(TAG, "searchBestDays: searching for " + interpreterIds.size() + " interpreters");
+
         final LocalDate today = LocalDate.now();
+        final DateRange range = new DateRange( today, today.plusDays(BEST_DAYS_SEARCH_DAYS) );
+
+        // Days hidden by the filter aren't searched
+        final BestDaysQuery.Builder builder = new BestDaysQuery.Builder()
+                .setDateRange( range.getStart(), range.getEnd() )
+                .setFilter( this.getDataManager().getDayFilter() );
 
-        for (Day day : days) {
-            if ( day.getDate().isEqual(today) ) break;
-            else count++;
+        for (int id : interpreterIds) {
+            builder.addInterpreter(id);
         }
 
-        layoutManager.scrollToPositionWithOffset(count, 25);
+        final BestDaysQuery query = builder.build();
+        final LocationProfile profile = this.getDataManager().getCalendarProfile();
+        final Context appContext = this.requireContext().getApplicationContext();
+
+        this.getDataManager().loadStoredDays( range, days ->
+                BestDaysSearch.search(days, profile, appContext, query, this::showBestDays) );
     }
 
-    private LinkedList<Day> getDaysToDisplay() {
+    /** Lists the found days - a click shows the details of a day */
+    private void showBestDays(List<BestDaysSearch.RankedDay> rankedDays) {
 
-        final Calendar calendar =
-                ((Mondtag) getActivity().getApplicationContext()).getDataManager().getCalendar();
+        if ( !this.isAdded() ) {
+            Log.d(TAG, "showBestDays: fragment isn't displayed anymore");
+            return;
+        }
 
-        final LinkedList<Day> days = calendar.getValidDays();
+        final AlertDialog.Builder builder = new AlertDialog.Builder( this.requireContext() )
+                .setTitle(R.string.best_days_title)
+                .setNegativeButton(R.string.dialog_button_close, null);
 
-        return days;
+        if (rankedDays.isEmpty()) {
+
+            builder.setMessage(R.string.best_days_none);
+
+        } else {
+
+            final String[] items = new String[rankedDays.size()];
+
+            for (int i = 0; i < items.length; i++) {
+
+                final BestDaysSearch.RankedDay rankedDay = rankedDays.get(i);
+
+                items[i] = ResourceMapper.formatLongDate( rankedDay.getDay().getDate() ) + " – "
+                        + this.getString( ResourceMapper.getStringId(rankedDay.getQuality()) );
+            }
+
+            builder.setItems(items, (dialog, which) -> ((MondtagActivity) this.requireActivity())
+                    .activateDayDetailView( rankedDays.get(which).getDay() ));
+        }
+
+        builder.show();
+    }
+
+    /** Shows the qualities of the given interpreters in every row - none turns comparison off */
+    private void onComparedInterpretersChanged(List<Integer> interpreterIds) {
+
+        Log.d(TAG, "onComparedInterpretersChanged: comparing " + interpreterIds.size()
+                + " interpreters");
+
+        final List<MappedInterpreter> interpreters = new ArrayList<>(interpreterIds.size());
+
+        for (int id : interpreterIds) {
+
+            final MappedInterpreter interpreter = InterpreterManager.getInterpreter(id);
+
+            if (interpreter != null) {
+                interpreters.add(interpreter);
+            }
+        }
+
+        this.getDataManager().setComparedInterpreters(interpreters);
+
+        // Only rows of days are bound again - their qualities are calculated once per day
+        this.updateInterpreters();
+    }
+
+    private List<Integer> getComparedInterpreterIds() {
+
+        final List<Integer> ids = new ArrayList<>();
+
+        for (MappedInterpreter interpreter : this.getDataManager().getComparedInterpreters()) {
+            ids.add( interpreter.getId() );
+        }
+
+        return ids;
+    }
+
+    @Override
+    public void onFilterChosen(DayFilter filter) {
+
+        Log.d(TAG, "onFilterChosen: " + (filter.isEmpty() ? "showing all days" : "filtering days"));
+
+        this.getDataManager().setDayFilter(filter);
+
+        final LocalDate firstVisible = this.getFirstVisibleDate();
+
+        this.submitDays( () -> this.scrollTo(firstVisible == null ? LocalDate.now() : firstVisible) );
+        this.updateSubtitle();
     }
 
     @Override
@@ -185,7 +523,9 @@ public class CalendarFragment extends Fragment
             this.getDataManager().setSelectedInterpreter(interpreter);
         }
 
-        this.updateCalendar();
+        // Only rows with another interpretation get bound again
+        this.updateInterpreters();
+        this.updateSubtitle();
     }
 
     private DataManager getDataManager() {
@@ -0,0 +1,510 @@
+package de.kah2.mondtag.calendar;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.kah2.mondtag.datamanagement.LocationProfile;
+import de.kah2.zodiac.libZodiac4A.Day;
+import de.kah2.zodiac.libZodiac4A.interpretation.Interpreter.Quality;
+import de.kah2.zodiac.libZodiac4A.planetary.LunarPhase;
+import de.kah2.zodiac.libZodiac4A.zodiac.ZodiacDirection;
+import de.kah2.zodiac.libZodiac4A.zodiac.ZodiacElement;
+import de.kah2.zodiac.libZodiac4A.zodiac.ZodiacSign;
+
+/**
+ * <p>A bitmap index of the days of the displayed calendar. Bit <code>i</code> stands for the day
+ * <code>i</code> days after the first indexed date. There is a {@link BitSet} of the days having
+ * each {@link ZodiacSign}, {@link ZodiacElement}, {@link ZodiacDirection} and {@link LunarPhase}
+ * and for every interpreter and {@link Quality} one of the days having at least that quality. So
+ * filters are answered by combining a few bit sets - see {@link #getMatching(DayFilter)}.</p>
+ * <p>The index is updated incrementally: only days that weren't indexed before are looked at, bits
+ * of evicted days are dropped. It isn't thread safe - use
+ * {@link #execute(List, LocationProfile, Context, Task)} to access the shared index or
+ * {@link #executeDetached(List, LocationProfile, Context, Task)} to index other days. When another
+ * calendar gets displayed, the shared index is dropped by {@link #reset()}, so it doesn't keep the
+ * days of previous calendars.</p>
+ * @see BestDaysSearch
+ */
+class CalendarIndex {
+
+    private final static String TAG = CalendarIndex.class.getSimpleName();
+
+    private final static ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(() -> {
+            android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "mondtag-calendar-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** The index of the displayed calendar - only accessed by the index thread */
+    private static CalendarIndex shared = null;
+
+    private final static Quality[] QUALITIES = Quality.values();
+
+    private final LocationProfile profile;
+
+    /** The date of bit 0 or null if the index is empty */
+    private LocalDate firstDate = null;
+
+    /** The indexed days - null where the calendar has no valid day */
+    private final ArrayList<Day> days = new ArrayList<>();
+
+    /** The days contained in the index */
+    private BitSet present = new BitSet();
+
+    /** Days whose lunar data wasn't calculated yet - they get indexed again by the next update */
+    private BitSet incomplete = new BitSet();
+
+    private final BitSet[] signs = createBitSets( ZodiacSign.values().length );
+    private final BitSet[] elements = createBitSets( ZodiacElement.values().length );
+    private final BitSet[] directions = createBitSets( ZodiacDirection.values().length );
+    private final BitSet[] phases = createBitSets( LunarPhase.values().length );
+
+    /**
+     * Indexed by the position of the interpreter within {@link InterpreterManager#getInterpreters()}
+     * and by {@link Quality#ordinal()}
+     */
+    private final BitSet[][] atLeast;
+
+    private CalendarIndex(LocationProfile profile) {
+
+        this.profile = profile;
+
+        this.atLeast = new BitSet[ InterpreterManager.getInterpreters().size() ][];
+
+        for (int i = 0; i < this.atLeast.length; i++) {
+            this.atLeast[i] = createBitSets(QUALITIES.length);
+        }
+    }
+
+    private static BitSet[] createBitSets(int count) {
+
+        final BitSet[] bitSets = new BitSet[count];
+
+        for (int i = 0; i < count; i++) {
+            bitSets[i] = new BitSet();
+        }
+
+        return bitSets;
+    }
+
+    /**
+     * Brings the shared index up to date with the given days and runs a task using it - both
+     * happen on a single background thread, so tasks are executed in the order they were passed.
+     * @param days the valid days of the displayed calendar sorted by date - the list must not be
+     *             modified afterwards
+     * @param profile the profile the days were calculated for
+     * @param task runs on the index thread
+     */
+    static void execute(List<Day> days, LocationProfile profile, Context context, Task task) {
+
+        final Context appContext = context.getApplicationContext();
+
+        EXECUTOR.execute(() -> {
+
+            if (shared == null || !shared.profile.equals(profile)) {
+                shared = new CalendarIndex(profile);
+            }
+
+            final long start = System.nanoTime();
+
+            final int indexed = shared.update(days, appContext);
+
+            if (indexed > 0) {
+                Log.d(TAG, "execute: indexed " + indexed + " days in "
+                        + (System.nanoTime() - start) / 1000000 + "ms");
+            }
+
+            task.run(shared);
+        });
+    }
+
+    /**
+     * Indexes the given days in a new index, which isn't shared, and runs a task using it on the
+     * index thread - e.g. for days that aren't displayed.
+     * @param days valid days sorted by date - the list must not be modified afterwards
+     * @param profile the profile the days were calculated for
+     */
+    static void executeDetached(List<Day> days, LocationProfile profile, Context context,
+                                Task task) {
+
+        final Context appContext = context.getApplicationContext();
+
+        EXECUTOR.execute(() -> {
+
+            final CalendarIndex index = new CalendarIndex(profile);
+
+            final long start = System.nanoTime();
+
+            final int indexed = index.update(days, appContext);
+
+            Log.d(TAG, "executeDetached: indexed " + indexed + " days in "
+                    + (System.nanoTime() - start) / 1000000 + "ms");
+
+            task.run(index);
+        });
+    }
+
+    /**
+     * Drops the shared index - the next call of
+     * {@link #execute(List, LocationProfile, Context, Task)} indexes its days from scratch. Tasks passed before still use the current index.
+     */
+    static void reset() {
+        EXECUTOR.execute( () -> shared = null );
+    }
+
+    /**
+     * Adds days that weren't indexed yet and drops days the list doesn't contain anymore. Qualities
+     * are taken from the {@link QualityVector}s of the days, which are mostly cached.
+     * @return the number of days that were indexed
+     */
+    private int update(List<Day> newDays, Context context) {
+
+        if ( newDays.isEmpty() ) {
+            this.clear();
+            return 0;
+        }
+
+        final LocalDate newFirst = newDays.get(0).getDate();
+        final LocalDate newLast = newDays.get(newDays.size() - 1).getDate();
+
+        if ( this.firstDate == null
+                || newLast.isBefore(this.firstDate)
+                || newFirst.toEpochDay() > this.firstDate.toEpochDay() + this.days.size() ) {
+
+            // Nothing can be kept, e.g. after the calendar was moved to another date
+            this.clear();
+            this.firstDate = newFirst;
+        }
+
+        // Bit 0 always stands for the first day
+        final int shift = (int) (this.firstDate.toEpochDay() - newFirst.toEpochDay());
+
+        if (shift > 0) {
+            this.shiftUp(shift);
+        } else if (shift < 0) {
+            this.shiftDown(-shift);
+        }
+
+        this.firstDate = newFirst;
+
+        final int size = (int) (newLast.toEpochDay() - newFirst.toEpochDay()) + 1;
+
+        this.truncate(size);
+
+        final BitSet stillPresent = new BitSet(size);
+        int indexed = 0;
+
+        for (Day day : newDays) {
+
+            final int i = this.indexOf( day.getDate() );
+
+            stillPresent.set(i);
+
+            final boolean isIndexed = this.present.get(i) && !this.incomplete.get(i);
+
+            // Another calendar contains other instances, but their data is the same
+            this.days.set(i, day);
+
+            if (!isIndexed) {
+                this.clear(i);
+                this.index(i, day, context);
+                indexed++;
+            }
+        }
+
+        // Days the calendar doesn't contain anymore
+        final BitSet evicted = (BitSet) this.present.clone();
+        evicted.andNot(stillPresent);
+
+        for (int i = evicted.nextSetBit(0); i >= 0; i = evicted.nextSetBit(i + 1)) {
+            this.clear(i);
+            this.days.set(i, null);
+        }
+
+        return indexed;
+    }
+
+    private void index(int i, Day day, Context context) {
+
+        this.present.set(i);
+
+        final ZodiacSign sign = day.getZodiacData().getSign();
+        final ZodiacElement element = day.getZodiacData().getElement();
+        final ZodiacDirection direction = day.getZodiacData().getDirection();
+        final LunarPhase phase = day.getPlanetaryData().getLunarPhase();
+
+        if (sign != null) {
+            this.signs[sign.ordinal()].set(i);
+        }
+
+        if (element != null) {
+            this.elements[element.ordinal()].set(i);
+        }
+
+        if (direction != null) {
+            this.directions[direction.ordinal()].set(i);
+        }
+
+        if (phase != null) {
+            this.phases[phase.ordinal()].set(i);
+        }
+
+        // Interpreters need both - days of parallel chunks get them after generation finished
+        if (direction == null || phase == null) {
+            this.incomplete.set(i);
+            return;
+        }
+
+        final QualityVector qualities = QualityVector.of(day, this.profile, context);
+
+        for (int interpreter = 0;
+             interpreter < Math.min(qualities.size(), this.atLeast.length); interpreter++) {
+
+            final Quality quality = qualities.get(interpreter);
+
+            if (quality == null) {
+                continue;
+            }
+
+            // A day having a quality has every worse quality, too
+            for (int q = 0; q <= quality.ordinal(); q++) {
+                this.atLeast[interpreter][q].set(i);
+            }
+        }
+    }
+
+    /** Clears all bits of a day */
+    private void clear(int i) {
+        this.present.clear(i);
+        this.incomplete.clear(i);
+        this.forEachBitSet( bits -> { bits.clear(i); return bits; } );
+    }
+
+    private void clear() {
+        this.firstDate = null;
+        this.days.clear();
+        this.present = new BitSet();
+        this.incomplete = new BitSet();
+        this.forEachBitSet( bits -> new BitSet() );
+    }
+
+    /** Makes room for days added before the first day */
+    private void shiftUp(int count) {
+
+        this.days.addAll( 0, Collections.nCopies(count, null) );
+
+        this.present = shiftUp(this.present, count);
+        this.incomplete = shiftUp(this.incomplete, count);
+        this.forEachBitSet( bits -> shiftUp(bits, count) );
+    }
+
+    private static BitSet shiftUp(BitSet bits, int count) {
+
+        final BitSet shifted = new BitSet( bits.length() + count );
+
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            shifted.set(i + count);
+        }
+
+        return shifted;
+    }
+
+    /** Drops the first days */
+    private void shiftDown(int count) {
+
+        this.days.subList( 0, Math.min(count, this.days.size()) ).clear();
+
+        this.present = shiftDown(this.present, count);
+        this.incomplete = shiftDown(this.incomplete, count);
+        this.forEachBitSet( bits -> shiftDown(bits, count) );
+    }
+
+    private static BitSet shiftDown(BitSet bits, int count) {
+        return bits.get( count, Math.max(count, bits.length()) );
+    }
+
+    /** Drops the days after the given number of days and makes room for new ones */
+    private void truncate(int size) {
+
+        if (this.days.size() > size) {
+            this.days.subList(size, this.days.size()).clear();
+        } else {
+            this.days.addAll( Collections.nCopies(size - this.days.size(), null) );
+        }
+
+        this.present.clear( size, Math.max(size, this.present.length()) );
+        this.incomplete.clear( size, Math.max(size, this.incomplete.length()) );
+        this.forEachBitSet( bits -> {
+            bits.clear( size, Math.max(size, bits.length()) );
+            return bits;
+        });
+    }
+
+    /** Replaces every attribute and quality bit set by the result of the operation */
+    private void forEachBitSet(BitSetOperation operation) {
+
+        replace(this.signs, operation);
+        replace(this.elements, operation);
+        replace(this.directions, operation);
+        replace(this.phases, operation);
+
+        for (BitSet[] qualities : this.atLeast) {
+            replace(qualities, operation);
+        }
+    }
+
+    private static void replace(BitSet[] bitSets, BitSetOperation operation) {
+        for (int i = 0; i < bitSets.length; i++) {
+            bitSets[i] = operation.apply(bitSets[i]);
+        }
+    }
+
+    /** @return a new bit set of the days matching all conditions of the filter */
+    BitSet getMatching(DayFilter filter) {
+
+        final BitSet matching = (BitSet) this.present.clone();
+
+        andAnyOf(matching, this.signs, filter.getSigns());
+        andAnyOf(matching, this.elements, filter.getElements());
+        andAnyOf(matching, this.directions, filter.getDirections());
+        andAnyOf(matching, this.phases, filter.getPhases());
+
+        if ( filter.hasQualityFilter() ) {
+
+            final BitSet quality = this.getAtLeast( filter.getInterpreterId(),
+                    filter.getMinQuality() );
+
+            if (quality == null) {
+                Log.w(TAG, "getMatching: unknown interpreter " + filter.getInterpreterId());
+                matching.clear();
+            } else {
+                matching.and(quality);
+            }
+        }
+
+        return matching;
+    }
+
+    /** Keeps the days having any of the values - nothing is changed if there are no values */
+    private static <E extends Enum<E>> void andAnyOf(BitSet matching, BitSet[] bitSets,
+                                                     Set<E> values) {
+
+        if ( values.isEmpty() ) {
+            return;
+        }
+
+        final BitSet any = new BitSet( matching.length() );
+
+        for (E value : values) {
+            any.or( bitSets[value.ordinal()] );
+        }
+
+        matching.and(any);
+    }
+
+    /**
+     * @return a new bit set of the days having at least the given quality for the interpreter or
+     * null if the interpreter is unknown
+     */
+    BitSet getAtLeast(int interpreterId, Quality quality) {
+
+        final int interpreter = InterpreterManager.getIndex(interpreterId);
+
+        if (interpreter < 0 || interpreter >= this.atLeast.length) {
+            return null;
+        }
+
+        return (BitSet) this.atLeast[interpreter][quality.ordinal()].clone();
+    }
+
+    /** @return a bit set of all indexed days between two dates - both are included */
+    BitSet getRange(LocalDate from, LocalDate to) {
+
+        final BitSet range = new BitSet( this.size() );
+
+        final int fromIndex = Math.max(0, this.indexOf(from));
+        final int toIndex = Math.min(this.size() - 1, this.indexOf(to));
+
+        if (fromIndex <= toIndex) {
+            range.set(fromIndex, toIndex + 1);
+        }
+
+        range.and(this.present);
+
+        return range;
+    }
+
+    /** @return the days of the set bits sorted by date */
+    List<Day> getDays(BitSet bits) {
+
+        final List<Day> result = new ArrayList<>( bits.cardinality() );
+
+        for (int i = bits.nextSetBit(0); i >= 0 && i < this.size(); i = bits.nextSetBit(i + 1)) {
+
+            final Day day = this.days.get(i);
+
+            if (day != null) {
+                result.add(day);
+            }
+        }
+
+        return result;
+    }
+
+    /** @return the index of the date - it's out of bounds if the date isn't part of this index */
+    int indexOf(LocalDate date) {
+
+        if (this.firstDate == null) {
+            return -1;
+        }
+
+        final long offset = date.toEpochDay() - this.firstDate.toEpochDay();
+
+        if (offset < 0) {
+            return -1;
+        }
+
+        return (int) Math.min(offset, Integer.MAX_VALUE);
+    }
+
+    /** @return the number of days between the first and the last indexed day - both included */
+    int size() {
+        return this.days.size();
+    }
+
+    /** @return the first indexed date or null if the index is empty */
+    LocalDate getFirstDate() {
+        return this.firstDate;
+    }
+
+    /** @return the last indexed date or null if the index is empty */
+    LocalDate getLastDate() {
+        return this.firstDate == null ? null : this.firstDate.plusDays(this.size() - 1);
+    }
+
+    /** @return the day or null if the calendar has no valid day at that date */
+    Day getDay(int index) {
+        return this.days.get(index);
+    }
+
+    /** Work done with the up-to-date index on the index thread. */
+    interface Task {
+        void run(CalendarIndex index);
+    }
+
+    private interface BitSetOperation {
+        BitSet apply(BitSet bits);
+    }
+}
@@ -2,37 +2,38 @@ package de.kah2.mondtag.calendar;
 
 import android.content.Context;
 import android.view.View;
+import android.widget.GridLayout;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.time.Instant;
 import java.time.LocalDate;
-import java.time.ZoneId;
+import java.util.Collections;
 import java.util.LinkedList;
 
 import de.kah2.mondtag.Mondtag;
 import de.kah2.mondtag.R;
+import de.kah2.mondtag.datamanagement.LocationProfile;
 import de.kah2.zodiac.libZodiac4A.Day;
 
 /**
  * This class is used to capsule basic day-display functionality used by
  * {@link DayRecyclerViewAdapter.Item} and
- * {@link DayDetailFragment}.
+ * {@link DayDetailFragment}. It holds the views of a day, so they are only looked up once.
  * Created by kahles on 21.03.17.
  */
 class DayDataDisplayer {
 
-    private final ZoneId zoneId;
+    private final LocationProfile profile;
 
     private final View dayView;
 
     /** Exists only in normal day-layout! */
-    private TextView dateView;
+    private final TextView dateView;
     /** Exists only in normal day-layout! */
-    private TextView dayOfWeekView;
+    private final TextView dayOfWeekView;
 
     private final TextView solarRiseTextField;
     private final TextView solarSetTextView;
@@ -51,12 +52,22 @@ class DayDataDisplayer {
     private final TextView zodiacElementText;
     private final ImageView interpretationIcon;
     private final TextView interpretationAnnotationTextView;
+    /** Exists only in normal day-layout! */
+    private final GridLayout comparisonLayout;
 
     private boolean isDayDetailView;
 
-    DayDataDisplayer(View dayView, ZoneId zoneId) {
+    /**
+     * Looks up all views once - a displayer can be reused to bind other days to the same view.
+     * @param profile the profile used by {@link #setDayData(Day, boolean)} - models passed to
+     *                {@link #bind(DayRenderModel)} are already formatted
+     */
+    DayDataDisplayer(View dayView, LocationProfile profile) {
         this.dayView = dayView;
-        this.zoneId = zoneId;
+        this.profile = profile;
+
+        this.dayOfWeekView = dayView.findViewById(R.id.day_of_week_text);
+        this.dateView = dayView.findViewById(R.id.date_text);
 
         this.solarRiseTextField = dayView.findViewById(R.id.sun_rise_text);
         this.solarSetTextView = dayView.findViewById(R.id.sun_set_text);
@@ -81,10 +92,12 @@ class DayDataDisplayer {
         this.interpretationIcon = dayView.findViewById(R.id.interpretation_icon);
         this.interpretationAnnotationTextView =
                 dayView.findViewById(R.id.interpretation_annotation_text);
+        this.comparisonLayout = dayView.findViewById(R.id.comparison_layout);
     }
 
     /**
-     * This method fills in the values:
+     * This method fills in the values - used by {@link DayDetailFragment}, where it's only called
+     * once. The calendar uses {@link #bind(DayRenderModel)} with models created in background.
      * @param day The day object containing the data to display
      * @param isDayDetailView must be true if used in {@link DayDetailFragment}, false if used in
      *                        normal {@link CalendarFragment}
@@ -93,164 +106,116 @@ class DayDataDisplayer {
 
         this.isDayDetailView = isDayDetailView;
 
-        this.initDateFields(day, isDayDetailView);
-
-        this.initSolarRiseSetFields(day);
-
-        this.initLunarRiseSetFields(day);
-
-        if (day.getPlanetaryData().getLunarPhase() != null) {
-            this.initFields(day.getPlanetaryData().getLunarPhase(), lunarPhaseIcon, lunarPhaseText);
-        }
+        // In DayDetailFragment all interpretations are shown in a list
+        final MappedInterpreter interpreter = isDayDetailView ? null :
+                ((Mondtag) getContext().getApplicationContext()).getDataManager()
+                        .getSelectedInterpreter();
 
-        this.initFields(day.getZodiacData().getDirection(), zodiacDirectionIcon, zodiacDirectionText);
-        this.initFields(day.getZodiacData().getSign(), zodiacSignIcon, zodiacSignText);
-        this.initFields(day.getZodiacData().getElement(), zodiacElementIcon, zodiacElementText);
+        // DayDetailFragment shows all interpretations anyway
+        this.bind( DayRenderModel.create(day, getContext(), this.profile, interpreter,
+                Collections.emptyList(), LocalDate.now()) );
 
         if (isDayDetailView) {
-
             this.initAllInterpretersList(day);
-
-        } else {
-
-            this.initSelectedInterpretationFields(day);
         }
     }
 
-    private void initDateFields(Day day, boolean isDayDetailView) {
-
-        // In DayDetailFragment this is shown in title
-        if (!isDayDetailView) {
+    /** Assigns the values of a model to the views - nothing gets calculated or formatted here. */
+    void bind(DayRenderModel model) {
 
-            this.dayOfWeekView = this.dayView.findViewById(R.id.day_of_week_text);
-            this.dayOfWeekView.setText(ResourceMapper.formatDayOfWeek(day.getDate()));
-
-            this.dateView = this.dayView.findViewById(R.id.date_text);
-            this.dateView.setText(ResourceMapper.formatDate(day.getDate()));
+        // In DayDetailFragment the date is shown in title
+        if (!this.isDayDetailView) {
+            this.dayOfWeekView.setText( model.getDayOfWeekText() );
+            this.dateView.setText( model.getDateText() );
         }
-    }
-
-    private void initSolarRiseSetFields(Day day) {
-
-        this.solarRiseTextField.setText(
-                ResourceMapper.formatTime( getContext(), zoneId,
-                        day.getPlanetaryData().getSolarRiseSet().getRise() ) );
-        this.solarSetTextView.setText(
-                ResourceMapper.formatTime( getContext(), zoneId,
-                        day.getPlanetaryData().getSolarRiseSet().getSet() ) );
-    }
-
-    private void initLunarRiseSetFields(Day day) {
-
-        final Context context = this.getContext();
-
-        final Instant rise = day.getPlanetaryData().getLunarRiseSet().getRise();
-        final String localRise = ResourceMapper.formatTime(context, zoneId, rise);
-
-        final Instant set = day.getPlanetaryData().getLunarRiseSet().getSet();
-        final String localSet = ResourceMapper.formatTime(context, zoneId, set);
-
-        // We can have four cases:
-        if ( !day.getDate().isEqual(LocalDate.from(rise)) ) {
-
-            // 1. No rise
-            this.lunarRiseSetFirstIcon.setImageResource(R.drawable.lunar_set);
-            this.lunarRiseSetFirstIcon.setContentDescription(getContext().getString(R.string.description_lunar_set));
-            this.lunarRiseSetFirstTextView.setText(localSet);
 
-            this.disableSecondLunarFields();
+        this.solarRiseTextField.setText( model.getSolarRiseText() );
+        this.solarSetTextView.setText( model.getSolarSetText() );
 
-        } else if (!day.getDate().isEqual(LocalDate.from(set))) {
+        this.lunarRiseSetFirstIcon.setImageResource( model.getLunarRiseSetFirstIcon() );
+        this.lunarRiseSetFirstIcon.setContentDescription( model.getLunarRiseSetFirstDescription() );
+        this.lunarRiseSetFirstTextView.setText( model.getLunarRiseSetFirstText() );
 
-            // 2. No set
-            this.lunarRiseSetFirstTextView.setText(localRise);
-            this.lunarRiseSetFirstIcon.setImageResource(R.drawable.lunar_rise);
-            this.lunarRiseSetFirstIcon.setContentDescription(
-                    getContext().getString(R.string.description_lunar_rise));
+        if ( model.hasSecondLunarRiseSet() || !this.isDayDetailView ) {
 
-            this.disableSecondLunarFields();
-
-        } else if (rise.isBefore(set)) {
-
-            // 3. First rise, then set
-            this.lunarRiseSetFirstTextView.setText(localRise);
-            this.lunarRiseSetFirstIcon.setImageResource(R.drawable.lunar_rise);
-            this.lunarRiseSetFirstIcon.setContentDescription(
-                    getContext().getString(R.string.description_lunar_rise));
-
-            this.lunarRiseSetSecondTextView.setText(localSet);
-            this.lunarRiseSetSecondIcon.setImageResource(R.drawable.lunar_set);
+            this.lunarRiseSetSecondIcon.setImageResource( model.getLunarRiseSetSecondIcon() );
             this.lunarRiseSetSecondIcon.setContentDescription(
-                    getContext().getString(R.string.description_lunar_set));
+                    model.getLunarRiseSetSecondDescription() );
+            this.lunarRiseSetSecondTextView.setText( model.getLunarRiseSetSecondText() );
 
         } else {
 
-            // 4. Set is before rise
-            this.lunarRiseSetFirstIcon.setImageResource(R.drawable.lunar_set);
-            this.lunarRiseSetFirstIcon.setContentDescription(
-                    getContext().getString(R.string.description_lunar_set));
-            this.lunarRiseSetFirstTextView.setText(localSet);
+            this.lunarRiseSetSecondIcon.setVisibility(View.GONE);
+            this.lunarRiseSetSecondDescription.setVisibility(View.GONE);
+            this.lunarRiseSetSecondTextView.setVisibility(View.GONE);
+        }
 
-            this.lunarRiseSetSecondIcon.setImageResource(R.drawable.lunar_rise);
-            this.lunarRiseSetSecondIcon.setContentDescription(getContext().getString(R.string.description_lunar_rise));
-            this.lunarRiseSetSecondTextView.setText(localRise);
+        this.bindFields( model.getLunarPhaseIcon(), model.getLunarPhaseText(),
+                this.lunarPhaseIcon, this.lunarPhaseText );
+        this.bindFields( model.getZodiacDirectionIcon(), model.getZodiacDirectionText(),
+                this.zodiacDirectionIcon, this.zodiacDirectionText );
+        this.bindFields( model.getZodiacSignIcon(), model.getZodiacSignText(),
+                this.zodiacSignIcon, this.zodiacSignText );
+        this.bindFields( model.getZodiacElementIcon(), model.getZodiacElementText(),
+                this.zodiacElementIcon, this.zodiacElementText );
+
+        if (!this.isDayDetailView) {
+            this.interpretationIcon.setImageResource( model.getInterpretationIcon() );
+            this.interpretationIcon.setContentDescription( model.getInterpretationQualityText() );
+            this.interpretationAnnotationTextView.setText( model.getInterpretationAnnotations() );
+            this.bindComparison(model);
         }
     }
 
-    private void disableSecondLunarFields() {
+    /** Shows one icon and name per compared interpreter - views of recycled rows are reused */
+    private void bindComparison(DayRenderModel model) {
 
-        if (isDayDetailView) {
-
-            this.lunarRiseSetSecondIcon.setVisibility(View.GONE);
-            this.lunarRiseSetSecondDescription.setVisibility(View.GONE);
-            this.lunarRiseSetSecondTextView.setVisibility(View.GONE);
+        final int count = model.getComparisonCount();
 
-        } else {
-
-            this.lunarRiseSetSecondIcon.setImageResource(0);
-            this.lunarRiseSetSecondIcon.setContentDescription("");
-            this.lunarRiseSetSecondTextView.setText("");
+        if (count == 0) {
+            this.comparisonLayout.setVisibility(View.GONE);
+            return;
         }
-    }
 
-    private void initFields(Enum<?> e, ImageView imageView, TextView textView) {
-        final Integer[] ids = ResourceMapper.getResourceIds(e);
-        final String text = getContext().getString(ids[ResourceMapper.INDEX_STRING]);
-        imageView.setImageResource(ids[ResourceMapper.INDEX_IMAGE]);
-        imageView.setContentDescription(text);
-        if (textView != null) textView.setText(text);
-    }
+        while (this.comparisonLayout.getChildCount() > count) {
+            this.comparisonLayout.removeViewAt( this.comparisonLayout.getChildCount() - 1 );
+        }
 
-    private void initSelectedInterpretationFields(Day day) {
+        final int padding =
+                getContext().getResources().getDimensionPixelSize(R.dimen.comparison_padding);
 
-        int qualityIcon = 0;
-        String qualityText = "";
-        String annotations = "";
+        while (this.comparisonLayout.getChildCount() < count) {
 
-        final MappedInterpreter interpreter =
-                ((Mondtag) getContext().getApplicationContext()).getDataManager()
-                        .getSelectedInterpreter();
+            final TextView view = new TextView( getContext() );
+            view.setCompoundDrawablePadding(padding);
+            view.setPaddingRelative(0, 0, padding, 0);
+            this.comparisonLayout.addView(view);
+        }
 
-        if (interpreter != null) {
+        for (int i = 0; i < count; i++) {
 
-            interpreter.interpret(day, getContext());
+            final TextView view = (TextView) this.comparisonLayout.getChildAt(i);
 
-            qualityIcon = interpreter.getQualityIcon();
-            qualityText = interpreter.getQualityText();
-            annotations = interpreter.getAnnotations();
+            view.setText( model.getComparisonName(i) );
+            view.setCompoundDrawablesRelativeWithIntrinsicBounds(
+                    model.getComparisonIcon(i), 0, 0, 0 );
+            view.setContentDescription( model.getComparisonName(i) + " "
+                    + model.getComparisonQualityText(i) );
         }
 
-        // Finally assign Strings to fields
-        this.interpretationIcon.setImageResource( qualityIcon );
-        this.interpretationIcon.setContentDescription( qualityText );
+        this.comparisonLayout.setVisibility(View.VISIBLE);
+    }
 
-        this.interpretationAnnotationTextView.setText( annotations );
+    private void bindFields(int icon, String text, ImageView imageView, TextView textView) {
+        imageView.setImageResource(icon);
+        imageView.setContentDescription(text);
+        if (textView != null) textView.setText(text);
     }
 
     private void initAllInterpretersList(Day day) {
 
-        final LinkedList<MappedInterpreter> interpreters =
-                InterpreterManager.getAllInterpretations(day, getContext());
+        final LinkedList<InterpretationResult> interpretations =
+                InterpreterManager.getAllInterpretations(day, this.profile, getContext());
 
         final RecyclerView view = this.dayView.findViewById(R.id.interpretation_list);
 
@@ -260,7 +225,7 @@ class DayDataDisplayer {
         view.setLayoutManager(linearLayoutManager);
 
         final DayDetailInterpretationListAdapter adapter =
-                new DayDetailInterpretationListAdapter(interpreters);
+                new DayDetailInterpretationListAdapter(interpretations);
         view.setAdapter(adapter);
     }
 
@@ -51,7 +51,8 @@ public class DayDetailFragment extends Fragment {
 
         DayDataDisplayer viewHolder = new DayDataDisplayer(
                 view,
-                ((Mondtag) getActivity().getApplicationContext()).getDataManager().getTimeZoneId() );
+                ((Mondtag) getActivity().getApplicationContext()).getDataManager()
+                        .getCalendarProfile() );
         viewHolder.setDayData(this.day, true);
         this.setLunarRiseSetDescriptions(view);
 
@@ -82,7 +83,7 @@ public class DayDetailFragment extends Fragment {
                 final LocalDate date = LocalDate.parse(dateStr);
 
                 this.day = ((Mondtag) getActivity().getApplicationContext()).getDataManager()
-                        .getCalendar().get(date);
+                        .getDisplayedDay(date);
             }
         }
     }
@@ -18,10 +18,10 @@ import de.kah2.mondtag.R;
 public class DayDetailInterpretationListAdapter
         extends RecyclerView.Adapter<DayDetailInterpretationListAdapter.InterpretationListItem> {
 
-    private final LinkedList<MappedInterpreter> interpreters;
+    private final LinkedList<InterpretationResult> interpretations;
 
-    DayDetailInterpretationListAdapter(LinkedList<MappedInterpreter> interpreters) {
-        this.interpreters = interpreters;
+    DayDetailInterpretationListAdapter(LinkedList<InterpretationResult> interpretations) {
+        this.interpretations = interpretations;
     }
 
     @NonNull
@@ -39,14 +39,14 @@ public class DayDetailInterpretationListAdapter
     @Override
     public void onBindViewHolder(@NonNull InterpretationListItem holder, int position) {
 
-        final MappedInterpreter interpreter = interpreters.get(position);
-        holder.bindElement(interpreter);
+        final InterpretationResult interpretation = interpretations.get(position);
+        holder.bindElement(interpretation);
     }
 
     @Override
     public int getItemCount() {
 
-        return interpreters.size();
+        return interpretations.size();
     }
 
     class InterpretationListItem extends RecyclerView.ViewHolder {
@@ -55,15 +55,15 @@ public class DayDetailInterpretationListAdapter
             super(itemView);
         }
 
-        void bindElement(MappedInterpreter interpreter) {
+        void bindElement(InterpretationResult interpretation) {
             ( (ImageView) itemView.findViewById(R.id.interpretation_icon) )
-                    .setImageResource( interpreter.getQualityIcon() );
+                    .setImageResource( interpretation.getQualityIcon() );
             ( (TextView) itemView.findViewById(R.id.interpretation_name) )
-                    .setText( interpreter.getId() );
+                    .setText( interpretation.getInterpreterNameId() );
             ( (TextView) itemView.findViewById(R.id.interpretation_quality_text) )
-                    .setText( interpreter.getQualityText() );
+                    .setText( interpretation.getQualityText() );
             ( (TextView) itemView.findViewById(R.id.interpretation_annotation_text) )
-                    .setText( interpreter.getAnnotations() );
+                    .setText( interpretation.getAnnotations() );
         }
     }
 }
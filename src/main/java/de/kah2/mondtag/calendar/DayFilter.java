@@ -0,0 +1,122 @@
+package de.kah2.mondtag.calendar;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import de.kah2.zodiac.libZodiac4A.interpretation.Interpreter.Quality;
+import de.kah2.zodiac.libZodiac4A.planetary.LunarPhase;
+import de.kah2.zodiac.libZodiac4A.zodiac.ZodiacDirection;
+import de.kah2.zodiac.libZodiac4A.zodiac.ZodiacElement;
+import de.kah2.zodiac.libZodiac4A.zodiac.ZodiacSign;
+
+/**
+ * An immutable filter on the zodiac and lunar attributes of days and optionally on the quality
+ * they have for an interpreter. A day matches if it has one of the given values of every attribute
+ * - empty attribute filters match every day. Filters are answered by {@link CalendarIndex} and
+ * created using a {@link Builder}.
+ */
+public class DayFilter {
+
+    /** Matches every day */
+    public final static DayFilter NONE = new Builder().build();
+
+    private final Set<ZodiacSign> signs;
+    private final Set<ZodiacElement> elements;
+    private final Set<ZodiacDirection> directions;
+    private final Set<LunarPhase> phases;
+
+    /** 0 if there's no quality filter */
+    private final int interpreterId;
+    private final Quality minQuality;
+
+    private DayFilter(Builder builder) {
+        this.signs = Collections.unmodifiableSet( EnumSet.copyOf(builder.signs) );
+        this.elements = Collections.unmodifiableSet( EnumSet.copyOf(builder.elements) );
+        this.directions = Collections.unmodifiableSet( EnumSet.copyOf(builder.directions) );
+        this.phases = Collections.unmodifiableSet( EnumSet.copyOf(builder.phases) );
+        this.interpreterId = builder.interpreterId;
+        this.minQuality = builder.minQuality;
+    }
+
+    Set<ZodiacSign> getSigns() {
+        return this.signs;
+    }
+
+    Set<ZodiacElement> getElements() {
+        return this.elements;
+    }
+
+    Set<ZodiacDirection> getDirections() {
+        return this.directions;
+    }
+
+    Set<LunarPhase> getPhases() {
+        return this.phases;
+    }
+
+    /** @return true if days must have a minimum quality for an interpreter */
+    boolean hasQualityFilter() {
+        return this.interpreterId != 0;
+    }
+
+    /** @return the id of the interpreter or 0 if there's no quality filter */
+    int getInterpreterId() {
+        return this.interpreterId;
+    }
+
+    /** @return the worst quality a day may have or null if there's no quality filter */
+    Quality getMinQuality() {
+        return this.minQuality;
+    }
+
+    /** @return true if this filter matches every day */
+    public boolean isEmpty() {
+        return this.signs.isEmpty() && this.elements.isEmpty()
+                && this.directions.isEmpty() && this.phases.isEmpty()
+                && !this.hasQualityFilter();
+    }
+
+    static class Builder {
+
+        private final EnumSet<ZodiacSign> signs = EnumSet.noneOf(ZodiacSign.class);
+        private final EnumSet<ZodiacElement> elements = EnumSet.noneOf(ZodiacElement.class);
+        private final EnumSet<ZodiacDirection> directions = EnumSet.noneOf(ZodiacDirection.class);
+        private final EnumSet<LunarPhase> phases = EnumSet.noneOf(LunarPhase.class);
+
+        private int interpreterId = 0;
+        private Quality minQuality = null;
+
+        Builder addSigns(Collection<ZodiacSign> signs) {
+            this.signs.addAll(signs);
+            return this;
+        }
+
+        Builder addElements(Collection<ZodiacElement> elements) {
+            this.elements.addAll(elements);
+            return this;
+        }
+
+        Builder addDirections(Collection<ZodiacDirection> directions) {
+            this.directions.addAll(directions);
+            return this;
+        }
+
+        Builder addPhases(Collection<LunarPhase> phases) {
+            this.phases.addAll(phases);
+            return this;
+        }
+
+        /** Only lets days pass, that have at least the given quality for the interpreter */
+        Builder setMinQuality(int interpreterId, Quality minQuality) {
+            this.interpreterId = interpreterId;
+            this.minQuality = minQuality;
+            return this;
+        }
+
+        DayFilter build() {
+            return new DayFilter(this);
+        }
+    }
+}
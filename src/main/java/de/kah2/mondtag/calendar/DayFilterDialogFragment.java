@@ -0,0 +1,220 @@
+package de.kah2.mondtag.calendar;
+
+import android.app.AlertDialog;
+import android.app.Dialog;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.View;
+import android.widget.ArrayAdapter;
+import android.widget.Spinner;
+
+import androidx.fragment.app.DialogFragment;
+import androidx.fragment.app.FragmentManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import de.kah2.mondtag.Mondtag;
+import de.kah2.mondtag.R;
+import de.kah2.zodiac.libZodiac4A.interpretation.Interpreter.Quality;
+import de.kah2.zodiac.libZodiac4A.planetary.LunarPhase;
+import de.kah2.zodiac.libZodiac4A.zodiac.ZodiacDirection;
+import de.kah2.zodiac.libZodiac4A.zodiac.ZodiacElement;
+import de.kah2.zodiac.libZodiac4A.zodiac.ZodiacSign;
+
+/**
+ * Lets the user choose one value per attribute to filter the calendar - e.g. only water days in
+ * descending moon. The first choice of every list matches all days. The chosen {@link DayFilter}
+ * is passed to the parent fragment, which must implement {@link FilterListener}.
+ */
+public class DayFilterDialogFragment extends DialogFragment {
+
+    private static final String TAG = DayFilterDialogFragment.class.getSimpleName();
+
+    private static final ZodiacSign[] SIGNS = ZodiacSign.values();
+    private static final ZodiacElement[] ELEMENTS = ZodiacElement.values();
+    private static final ZodiacDirection[] DIRECTIONS = ZodiacDirection.values();
+    private static final LunarPhase[] PHASES = LunarPhase.values();
+
+    /** Neutral isn't displayed anywhere, so it can't be chosen */
+    private static final Quality[] QUALITIES =
+            { Quality.WORST, Quality.BAD, Quality.GOOD, Quality.BEST };
+
+    private Spinner signSpinner;
+    private Spinner elementSpinner;
+    private Spinner directionSpinner;
+    private Spinner phaseSpinner;
+    private Spinner interpreterSpinner;
+    private Spinner qualitySpinner;
+
+    void show(FragmentManager fragmentManager) {
+        super.show(fragmentManager, TAG);
+    }
+
+    @Override
+    public Dialog onCreateDialog(Bundle savedInstanceState) {
+
+        final Context context = this.requireContext();
+
+        final View view = View.inflate(context, R.layout.day_filter_dialog, null);
+
+        final List<Integer> interpreterIds = InterpreterManager.getIds();
+
+        this.signSpinner = view.findViewById(R.id.filter_sign);
+        this.elementSpinner = view.findViewById(R.id.filter_element);
+        this.directionSpinner = view.findViewById(R.id.filter_direction);
+        this.phaseSpinner = view.findViewById(R.id.filter_phase);
+        this.interpreterSpinner = view.findViewById(R.id.filter_interpreter);
+        this.qualitySpinner = view.findViewById(R.id.filter_quality);
+
+        setChoices( this.signSpinner, R.string.filter_any, SIGNS.length,
+                i -> context.getString(ResourceMapper.getStringId(SIGNS[i])) );
+        setChoices( this.elementSpinner, R.string.filter_any, ELEMENTS.length,
+                i -> context.getString(ResourceMapper.getStringId(ELEMENTS[i])) );
+        setChoices( this.directionSpinner, R.string.filter_any, DIRECTIONS.length,
+                i -> context.getString(ResourceMapper.getStringId(DIRECTIONS[i])) );
+        setChoices( this.phaseSpinner, R.string.filter_any, PHASES.length,
+                i -> context.getString(ResourceMapper.getStringId(PHASES[i])) );
+        setChoices( this.interpreterSpinner, R.string.interpret_none, interpreterIds.size(),
+                i -> context.getString(interpreterIds.get(i)) );
+
+        final List<String> qualityNames = new ArrayList<>(QUALITIES.length);
+        for (Quality quality : QUALITIES) {
+            qualityNames.add( context.getString(ResourceMapper.getStringId(quality)) );
+        }
+        this.qualitySpinner.setAdapter( createAdapter(context, qualityNames) );
+
+        // Choices of a recreated dialog are restored with its views
+        if (savedInstanceState == null) {
+            this.showFilter( this.getDataManagerFilter(), interpreterIds );
+        }
+
+        return new AlertDialog.Builder(context)
+                .setTitle(R.string.filter_title)
+                .setView(view)
+                .setPositiveButton(R.string.filter_apply,
+                        (dialog, which) -> this.submitFilter( this.createFilter(interpreterIds) ))
+                .setNeutralButton(R.string.filter_reset,
+                        (dialog, which) -> this.submitFilter(DayFilter.NONE))
+                .setNegativeButton(android.R.string.cancel, null)
+                .create();
+    }
+
+    /** Adds the choice matching all days as first item */
+    private static void setChoices(Spinner spinner, int anyStringId, int count,
+                                   IntFunction<String> names) {
+
+        final Context context = spinner.getContext();
+
+        final List<String> choices = new ArrayList<>(count + 1);
+        choices.add( context.getString(anyStringId) );
+
+        for (int i = 0; i < count; i++) {
+            choices.add( names.apply(i) );
+        }
+
+        spinner.setAdapter( createAdapter(context, choices) );
+    }
+
+    private static ArrayAdapter<String> createAdapter(Context context, List<String> choices) {
+
+        final ArrayAdapter<String> adapter =
+                new ArrayAdapter<>(context, android.R.layout.simple_spinner_item, choices);
+        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+
+        return adapter;
+    }
+
+    private DayFilter getDataManagerFilter() {
+        return ((Mondtag) this.requireContext().getApplicationContext()).getDataManager()
+                .getDayFilter();
+    }
+
+    /** Selects the values of the filter - only the first value of an attribute can be shown */
+    private void showFilter(DayFilter filter, List<Integer> interpreterIds) {
+
+        this.signSpinner.setSelection( getPosition(filter.getSigns()) );
+        this.elementSpinner.setSelection( getPosition(filter.getElements()) );
+        this.directionSpinner.setSelection( getPosition(filter.getDirections()) );
+        this.phaseSpinner.setSelection( getPosition(filter.getPhases()) );
+
+        if ( filter.hasQualityFilter() ) {
+
+            this.interpreterSpinner.setSelection(
+                    interpreterIds.indexOf(filter.getInterpreterId()) + 1 );
+            this.qualitySpinner.setSelection( getQualityPosition(filter.getMinQuality()) );
+
+        } else {
+
+            this.qualitySpinner.setSelection( getQualityPosition(Quality.GOOD) );
+        }
+    }
+
+    private static <E extends Enum<E>> int getPosition(Set<E> values) {
+        return values.isEmpty() ? 0 : values.iterator().next().ordinal() + 1;
+    }
+
+    private static int getQualityPosition(Quality quality) {
+
+        for (int i = 0; i < QUALITIES.length; i++) {
+            if (QUALITIES[i] == quality) {
+                return i;
+            }
+        }
+
+        return 0;
+    }
+
+    private DayFilter createFilter(List<Integer> interpreterIds) {
+
+        final DayFilter.Builder builder = new DayFilter.Builder();
+
+        final int sign = this.signSpinner.getSelectedItemPosition();
+        if (sign > 0) {
+            builder.addSigns( Collections.singleton(SIGNS[sign - 1]) );
+        }
+
+        final int element = this.elementSpinner.getSelectedItemPosition();
+        if (element > 0) {
+            builder.addElements( Collections.singleton(ELEMENTS[element - 1]) );
+        }
+
+        final int direction = this.directionSpinner.getSelectedItemPosition();
+        if (direction > 0) {
+            builder.addDirections( Collections.singleton(DIRECTIONS[direction - 1]) );
+        }
+
+        final int phase = this.phaseSpinner.getSelectedItemPosition();
+        if (phase > 0) {
+            builder.addPhases( Collections.singleton(PHASES[phase - 1]) );
+        }
+
+        final int interpreter = this.interpreterSpinner.getSelectedItemPosition();
+        if (interpreter > 0) {
+            builder.setMinQuality( interpreterIds.get(interpreter - 1),
+                    QUALITIES[ Math.max(0, this.qualitySpinner.getSelectedItemPosition()) ] );
+        }
+
+        return builder.build();
+    }
+
+    private void submitFilter(DayFilter filter) {
+
+        if (this.getParentFragment() instanceof FilterListener) {
+            ((FilterListener) this.getParentFragment()).onFilterChosen(filter);
+        } else {
+            Log.e(TAG, "submitFilter: parent fragment doesn't listen for filters");
+        }
+    }
+
+    /** Receives the filter the user has chosen. */
+    interface FilterListener {
+
+        /** @param filter the chosen filter - {@link DayFilter#NONE} to show all days */
+        void onFilterChosen(DayFilter filter);
+    }
+}
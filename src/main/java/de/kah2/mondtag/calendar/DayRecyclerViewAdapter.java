@@ -1,51 +1,248 @@
 package de.kah2.mondtag.calendar;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.format.DateFormat;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import de.kah2.mondtag.R;
+import de.kah2.mondtag.datamanagement.LocationProfile;
 import de.kah2.zodiac.libZodiac4A.Day;
 
 /**
  * Displays a scrollable calendar.
+ * Rows are described by {@link DayRenderModel}s, which are created in background - binding a row
+ * only assigns prepared values to its views.
  * Created by kahles on 09.11.16.
  */
 public class DayRecyclerViewAdapter extends RecyclerView.Adapter<DayRecyclerViewAdapter.Item> {
 
-    private final ArrayList<Day> days;
+    private final static String THREAD_NAME = "mondtag-calendar-rows";
 
-    private ZoneId zoneId = ZoneId.systemDefault();
+    /**
+     * Creates models and calculates differences. A single thread keeps updates in the order they
+     * were submitted.
+     */
+    private final static ExecutorService BACKGROUND_EXECUTOR =
+            Executors.newSingleThreadExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final AsyncListDiffer<DayRenderModel> differ = new AsyncListDiffer<>(
+            new AdapterListUpdateCallback(this),
+            new AsyncDifferConfig.Builder<>( new ModelItemCallback() )
+                    .setBackgroundThreadExecutor(BACKGROUND_EXECUTOR)
+                    .build() );
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
-    private LocalDate today;
+    /** The models of the last submission - only accessed by the background thread */
+    private List<DayRenderModel> lastModels = Collections.emptyList();
+
+    /** The settings of {@link #lastModels} - only accessed by the background thread */
+    private RenderSettings lastSettings = null;
+
+    /** The days of the last submission - only accessed by the main thread */
+    private List<Day> submittedDays = Collections.emptyList();
+
+    /** The profile of {@link #submittedDays} or null if nothing was submitted yet */
+    private LocationProfile submittedProfile = null;
 
     private DayClickListener clickListener;
 
     DayRecyclerViewAdapter() {
-        this.days = new ArrayList<>();
     }
 
-    @SuppressLint("NotifyDataSetChanged")
-    void setDays(Iterable<Day> daysIterable, ZoneId zoneId) {
-        this.days.clear();
-        for (Day day: daysIterable) {
-            days.add(day);
+    /**
+     * Replaces the displayed days. Their models get created in background and only rows of added,
+     * removed or changed models get bound - e.g. after the calendar was extended only the new days,
+     * after the interpreter changed only days with another interpretation.
+     * Models of days whose data didn't change since the last call are reused.
+     * @param days days sorted by date, which must not be modified afterwards - they don't need to
+     *             be contiguous, e.g. if a {@link DayFilter} is applied
+     * @param interpreter the selected interpreter or null if none is selected
+     * @param comparedInterpreters the interpreters to compare in every row - may be empty
+     * @param commitCallback called on the main thread when the days are displayed - may be null
+     */
+    void submitDays(List<Day> days, LocationProfile profile,
+                    @Nullable MappedInterpreter interpreter,
+                    List<MappedInterpreter> comparedInterpreters, Context context,
+                    @Nullable Runnable commitCallback) {
+
+        this.submittedDays = days;
+        this.submittedProfile = profile;
+
+        final Context appContext = context.getApplicationContext();
+
+        final List<Integer> comparedIds = new ArrayList<>(comparedInterpreters.size());
+
+        for (MappedInterpreter compared : comparedInterpreters) {
+            comparedIds.add( compared.getId() );
         }
-        today = LocalDate.now();
-        this.zoneId = zoneId;
-        this.notifyDataSetChanged();
+
+        final RenderSettings settings = new RenderSettings( profile,
+                interpreter == null ? 0 : interpreter.getId(), comparedIds, LocalDate.now(),
+                DateFormat.is24HourFormat(appContext) );
+
+        BACKGROUND_EXECUTOR.execute( () -> {
+
+            final List<DayRenderModel> models = this.createModels( days, settings, interpreter,
+                    comparedInterpreters, appContext );
+
+            this.mainHandler.post( () -> this.differ.submitList(models, commitCallback) );
+        });
+    }
+
+    /**
+     * Displays the days of the last submission using other interpreters - only rows with another
+     * interpretation get bound. The days aren't read from the calendar again, so this can't
+     * display days that weren't passed to {@link #submitDays}.
+     * @param commitCallback called on the main thread when the days are displayed - may be null
+     */
+    void updateInterpreters(@Nullable MappedInterpreter interpreter,
+                            List<MappedInterpreter> comparedInterpreters, Context context,
+                            @Nullable Runnable commitCallback) {
+
+        if (this.submittedProfile == null) {
+            return;
+        }
+
+        this.submitDays( this.submittedDays, this.submittedProfile, interpreter,
+                comparedInterpreters, context, commitCallback );
+    }
+
+    private List<DayRenderModel> createModels(List<Day> days, RenderSettings settings,
+                                              @Nullable MappedInterpreter interpreter,
+                                              List<MappedInterpreter> comparedInterpreters,
+                                              Context context) {
+
+        final List<DayRenderModel> previous =
+                settings.equals(this.lastSettings) ? this.lastModels : Collections.emptyList();
+
+        final List<DayRenderModel> models = new ArrayList<>(days.size());
+
+        for (Day day : days) {
+
+            final int index = indexOf( previous, day.getDate() );
+
+            DayRenderModel model = null;
+
+            // Extended calendars contain copies of the previous days
+            if ( index >= 0 && previous.get(index).isCreatedFrom(day) ) {
+                model = previous.get(index);
+            }
+
+            if (model == null) {
+                model = DayRenderModel.create( day, context, settings.profile, interpreter,
+                        comparedInterpreters, settings.today );
+            }
+
+            models.add(model);
+        }
+
+        this.lastModels = models;
+        this.lastSettings = settings;
+
+        return models;
+    }
+
+    /** @return the number of days - without the extend button */
+    int getDayCount() {
+        return this.differ.getCurrentList().size();
+    }
+
+    /** @return the date of the last day or null if there are none */
+    LocalDate getLastDate() {
+        return this.getDate(this.getDayCount() - 1);
+    }
+
+    /** @return the date at the given adapter position or null if it isn't a day */
+    LocalDate getDate(int position) {
+
+        final List<DayRenderModel> models = this.differ.getCurrentList();
+
+        if (position < 0 || position >= models.size()) {
+            return null;
+        } else {
+            return models.get(position).getDate();
+        }
+    }
+
+    /** @return the position of the given date or -1 if it isn't displayed */
+    int getPosition(LocalDate date) {
+        return indexOf( this.differ.getCurrentList(), date );
+    }
+
+    /**
+     * @return the position of the given date or of the first displayed date after it - or of the
+     * last day if all days are before it. -1 if there are no days.
+     */
+    int getNearestPosition(LocalDate date) {
+
+        final List<DayRenderModel> models = this.differ.getCurrentList();
+
+        final int index = binarySearch(models, date);
+
+        if (index >= 0) {
+            return index;
+        }
+
+        return Math.min( -index - 1, models.size() - 1 );
+    }
+
+    /** @return the index of the model of the date or -1 if there is none */
+    private static int indexOf(List<DayRenderModel> models, LocalDate date) {
+        return Math.max( -1, binarySearch(models, date) );
+    }
+
+    /**
+     * Models are sorted by date, but their days don't need to be contiguous.
+     * @return the index of the model or <code>(-(insertion point) - 1)</code> like
+     * {@link java.util.Collections#binarySearch(List, Object)}
+     */
+    private static int binarySearch(List<DayRenderModel> models, LocalDate date) {
+
+        int low = 0;
+        int high = models.size() - 1;
+
+        while (low <= high) {
+
+            final int middle = (low + high) >>> 1;
+            final int comparison = models.get(middle).getDate().compareTo(date);
+
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -(low + 1);
     }
 
     @NonNull
@@ -54,11 +251,11 @@ public class DayRecyclerViewAdapter extends RecyclerView.Adapter<DayRecyclerView
         final View inflatedView = LayoutInflater.from(parent.getContext())
                 .inflate( viewType , parent, false);
 
-        return new Item(inflatedView);
+        return new Item(inflatedView, viewType == R.layout.day_layout);
     }
 
     public int getItemViewType(int position) {
-        if (position < this.days.size()) {
+        if (position < this.getDayCount()) {
             return R.layout.day_layout;
         } else {
             return R.layout.extend_button;
@@ -67,29 +264,86 @@ public class DayRecyclerViewAdapter extends RecyclerView.Adapter<DayRecyclerView
 
     @Override
     public void onBindViewHolder(@NonNull Item holder, int position) {
-        Day day;
+        DayRenderModel model;
 
-        if ( position < days.size() ) {
+        if ( position < this.getDayCount() ) {
             // We have a "real" day
-            day = days.get(position);
+            model = this.differ.getCurrentList().get(position);
         } else {
             // We're at end and have the extend-button
-            day = null;
+            model = null;
         }
 
-        holder.bindElement(day);
+        holder.bindElement(model);
     }
 
     @Override
     public int getItemCount() {
         // +1 because we add the extend-range-Button
-        return days.size() + 1;
+        return this.getDayCount() + 1;
     }
 
     void setClickListener(DayClickListener clickListener) {
         this.clickListener = clickListener;
     }
 
+    /** Everything besides the day itself a {@link DayRenderModel} depends on */
+    private static class RenderSettings {
+
+        private final LocationProfile profile;
+        private final int interpreterId;
+        private final List<Integer> comparedIds;
+        private final LocalDate today;
+        private final boolean is24Hour;
+
+        private RenderSettings(LocationProfile profile, int interpreterId,
+                               List<Integer> comparedIds, LocalDate today, boolean is24Hour) {
+            this.profile = profile;
+            this.interpreterId = interpreterId;
+            this.comparedIds = comparedIds;
+            this.today = today;
+            this.is24Hour = is24Hour;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if ( !(o instanceof RenderSettings) ) {
+                return false;
+            }
+
+            final RenderSettings other = (RenderSettings) o;
+
+            return this.interpreterId == other.interpreterId
+                    && this.is24Hour == other.is24Hour
+                    && this.profile.equals(other.profile)
+                    && this.comparedIds.equals(other.comparedIds)
+                    && this.today.equals(other.today);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.profile, this.interpreterId, this.comparedIds, this.today,
+                    this.is24Hour);
+        }
+    }
+
+    /** Rows are identified by their date and only need to be bound if their model changed */
+    private static class ModelItemCallback extends DiffUtil.ItemCallback<DayRenderModel> {
+
+        @Override
+        public boolean areItemsTheSame(@NonNull DayRenderModel oldModel,
+                                       @NonNull DayRenderModel newModel) {
+            return oldModel.getDate().isEqual( newModel.getDate() );
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull DayRenderModel oldModel,
+                                          @NonNull DayRenderModel newModel) {
+            return oldModel.equals(newModel);
+        }
+    }
+
     /**
      * This is the sub-element of our {@link RecyclerView} to manage the days and the button to
      * extend data.
@@ -97,39 +351,38 @@ public class DayRecyclerViewAdapter extends RecyclerView.Adapter<DayRecyclerView
     class Item extends RecyclerView.ViewHolder
             implements View.OnClickListener, View.OnLongClickListener{
 
-        private Day day;
+        /** Holds the views of a day - null for the extend button */
+        private final DayDataDisplayer displayer;
 
-        Item(View itemView) {
+        Item(View itemView, boolean isDay) {
             super(itemView);
+
+            this.displayer = isDay ? new DayDataDisplayer(itemView, null) : null;
+
+            super.itemView.setOnClickListener(this);
+            super.itemView.setOnLongClickListener(this);
         }
 
         /**
-         * If a day is passed as argument its data will be displayed using
+         * If a model is passed as argument its data will be displayed using
          * {@link DayDataDisplayer}.
          */
-        void bindElement(Day day) {
-
-            this.day = day;
-
-            super.itemView.setOnClickListener(this);
-            super.itemView.setOnLongClickListener(this);
+        void bindElement(DayRenderModel model) {
 
             // if we have a day and not the "extend future"-buton
-            if (day != null) {
-                final DayDataDisplayer displayer = new DayDataDisplayer(itemView, zoneId);
-                displayer.setDayData(day, false);
+            if (model != null) {
+                this.displayer.bind(model);
 
-                setDailyLayoutProperties(day, displayer);
+                setDailyLayoutProperties(model);
             }
         }
 
         /** Manages highlighting of weekends and today */
-        private void setDailyLayoutProperties(Day day, DayDataDisplayer displayer) {
-            final DayOfWeek dayOfWeek = day.getDate().getDayOfWeek();
+        private void setDailyLayoutProperties(DayRenderModel model) {
 
-            final Context context = displayer.getContext();
+            final Context context = this.displayer.getContext();
 
-            final boolean isToday = day.getDate().isEqual(DayRecyclerViewAdapter.this.today);
+            final boolean isToday = model.isToday();
 
             // Elevate item, if it is TODAY
 
@@ -139,18 +392,20 @@ public class DayRecyclerViewAdapter extends RecyclerView.Adapter<DayRecyclerView
                 this.itemView.setBackgroundColor(
                         ContextCompat.getColor( context, R.color.background_today) );
 
-                displayer.getDayOfWeekView().setTypeface(null, Typeface.BOLD);
+                this.displayer.getDayOfWeekView().setTypeface(null, Typeface.BOLD);
 
             } else {
                 this.itemView.setElevation(6);
                 this.itemView.setBackgroundColor(
                         ContextCompat.getColor( context, R.color.background_default) );
+
+                this.displayer.getDayOfWeekView().setTypeface(null, Typeface.NORMAL);
             }
 
             // Set day-of-week-color
 
             int color;
-            if (dayOfWeek.equals(DayOfWeek.SATURDAY) || dayOfWeek.equals(DayOfWeek.SUNDAY)) {
+            if (model.isWeekend()) {
 
                 if (isToday)
                     color = R.color.day_of_week_weekend_color_highlight;
@@ -164,26 +419,43 @@ public class DayRecyclerViewAdapter extends RecyclerView.Adapter<DayRecyclerView
                 else
                     color = R.color.day_of_week_color;
             }
-            displayer.getDayOfWeekView().setTextColor(
+            this.displayer.getDayOfWeekView().setTextColor(
                     ContextCompat.getColor( context, color) );
         }
 
+        /**
+         * @return the day displayed by this row or null for the extend button - it's read from the
+         * current models, since rows with equal models aren't bound again. The row must have a
+         * position.
+         */
+        private Day getDay() {
+
+            final int position = this.getBindingAdapterPosition();
+            final List<DayRenderModel> models = DayRecyclerViewAdapter.this.differ.getCurrentList();
+
+            if (position >= models.size()) {
+                return null;
+            } else {
+                return models.get(position).getDay();
+            }
+        }
+
         @Override
         public void onClick(View v) {
             final DayClickListener listener = DayRecyclerViewAdapter.this.clickListener;
-            if (listener != null) {
-                listener.onShortClick(this.day);
+            if (listener != null && this.getBindingAdapterPosition() != RecyclerView.NO_POSITION) {
+                listener.onShortClick(this.getDay());
             }
         }
 
         @Override
         public boolean onLongClick(View v) {
             final DayClickListener listener = DayRecyclerViewAdapter.this.clickListener;
-            if (listener != null) {
-                return listener.onLongClick(this.day);
+            if (listener != null && this.getBindingAdapterPosition() != RecyclerView.NO_POSITION) {
+                return listener.onLongClick(this.getDay());
             } else {
                 return false;
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,496 @@
+package de.kah2.mondtag.calendar;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import de.kah2.mondtag.R;
+import de.kah2.mondtag.datamanagement.LocationProfile;
+import de.kah2.zodiac.libZodiac4A.Day;
+import de.kah2.zodiac.libZodiac4A.interpretation.Interpreter.Quality;
+import de.kah2.zodiac.libZodiac4A.planetary.LunarPhase;
+import de.kah2.zodiac.libZodiac4A.zodiac.ZodiacDirection;
+import de.kah2.zodiac.libZodiac4A.zodiac.ZodiacElement;
+import de.kah2.zodiac.libZodiac4A.zodiac.ZodiacSign;
+
+/**
+ * <p>Everything a row of the calendar displays for a {@link Day}: formatted strings and resource ids.
+ * Models are created in background by {@link #create(Day, Context, LocationProfile,
+ * MappedInterpreter, List, LocalDate)}, so binding a row only needs to assign them to views.</p>
+ * <p>Models are immutable and compared by their content, so a row only needs to be bound again if
+ * something it displays changed - e.g. the interpretation of its day.</p>
+ */
+class DayRenderModel {
+
+    /** Not part of the content - it's only kept to open the details of the day */
+    private final Day day;
+
+    /** The data of the day the texts were created from - see {@link #isCreatedFrom(Day)} */
+    private final Instant solarRise;
+    private final Instant solarSet;
+    private final Instant lunarRise;
+    private final Instant lunarSet;
+    private final LunarPhase lunarPhase;
+    private final ZodiacSign zodiacSign;
+    private final ZodiacDirection zodiacDirection;
+
+    private final LocalDate date;
+    private final String dayOfWeekText;
+    private final String dateText;
+    private final boolean isToday;
+    private final boolean isWeekend;
+
+    private final String solarRiseText;
+    private final String solarSetText;
+
+    private final int lunarRiseSetFirstIcon;
+    private final String lunarRiseSetFirstDescription;
+    private final String lunarRiseSetFirstText;
+    /** 0 if there's only a rise or a set */
+    private final int lunarRiseSetSecondIcon;
+    private final String lunarRiseSetSecondDescription;
+    private final String lunarRiseSetSecondText;
+
+    private final int lunarPhaseIcon;
+    private final String lunarPhaseText;
+    private final int zodiacSignIcon;
+    private final String zodiacSignText;
+    private final int zodiacDirectionIcon;
+    private final String zodiacDirectionText;
+    private final int zodiacElementIcon;
+    private final String zodiacElementText;
+
+    private final int interpretationIcon;
+    private final String interpretationQualityText;
+    private final String interpretationAnnotations;
+
+    /** Names, quality icons and quality texts of the compared interpreters - icons are 0 if the
+     * day is neutral or couldn't be interpreted */
+    private final String[] comparisonNames;
+    private final int[] comparisonIcons;
+    private final String[] comparisonQualityTexts;
+
+    private DayRenderModel(Builder builder) {
+
+        this.day = builder.day;
+        this.date = builder.day.getDate();
+        this.solarRise = builder.day.getPlanetaryData().getSolarRiseSet().getRise();
+        this.solarSet = builder.day.getPlanetaryData().getSolarRiseSet().getSet();
+        this.lunarRise = builder.day.getPlanetaryData().getLunarRiseSet().getRise();
+        this.lunarSet = builder.day.getPlanetaryData().getLunarRiseSet().getSet();
+        this.lunarPhase = builder.day.getPlanetaryData().getLunarPhase();
+        this.zodiacSign = builder.day.getZodiacData().getSign();
+        this.zodiacDirection = builder.day.getZodiacData().getDirection();
+        this.dayOfWeekText = builder.dayOfWeekText;
+        this.dateText = builder.dateText;
+        this.isToday = builder.isToday;
+        this.isWeekend = builder.isWeekend;
+        this.solarRiseText = builder.solarRiseText;
+        this.solarSetText = builder.solarSetText;
+        this.lunarRiseSetFirstIcon = builder.lunarRiseSetFirstIcon;
+        this.lunarRiseSetFirstDescription = builder.lunarRiseSetFirstDescription;
+        this.lunarRiseSetFirstText = builder.lunarRiseSetFirstText;
+        this.lunarRiseSetSecondIcon = builder.lunarRiseSetSecondIcon;
+        this.lunarRiseSetSecondDescription = builder.lunarRiseSetSecondDescription;
+        this.lunarRiseSetSecondText = builder.lunarRiseSetSecondText;
+        this.lunarPhaseIcon = builder.lunarPhaseIcon;
+        this.lunarPhaseText = builder.lunarPhaseText;
+        this.zodiacSignIcon = builder.zodiacSignIcon;
+        this.zodiacSignText = builder.zodiacSignText;
+        this.zodiacDirectionIcon = builder.zodiacDirectionIcon;
+        this.zodiacDirectionText = builder.zodiacDirectionText;
+        this.zodiacElementIcon = builder.zodiacElementIcon;
+        this.zodiacElementText = builder.zodiacElementText;
+        this.interpretationIcon = builder.interpretationIcon;
+        this.interpretationQualityText = builder.interpretationQualityText;
+        this.interpretationAnnotations = builder.interpretationAnnotations;
+        this.comparisonNames = builder.comparisonNames;
+        this.comparisonIcons = builder.comparisonIcons;
+        this.comparisonQualityTexts = builder.comparisonQualityTexts;
+    }
+
+    /**
+     * Formats all data of a day. Doesn't access any views, so it can be called by any thread.
+     * @param context used to resolve strings
+     * @param profile the profile the day was calculated for - times are displayed in its zone
+     * @param interpreter the interpreter to use or null if none is selected
+     * @param comparedInterpreters the interpreters to compare - may be empty
+     * @param today the date to highlight
+     */
+    static DayRenderModel create(Day day, Context context, LocationProfile profile,
+                                 @Nullable MappedInterpreter interpreter,
+                                 List<MappedInterpreter> comparedInterpreters, LocalDate today) {
+
+        final Builder builder = new Builder(day);
+        final ZoneId zoneId = profile.getZone();
+
+        final LocalDate date = day.getDate();
+        final DayOfWeek dayOfWeek = date.getDayOfWeek();
+
+        builder.dayOfWeekText = ResourceMapper.formatDayOfWeek(date);
+        builder.dateText = ResourceMapper.formatDate(date);
+        builder.isToday = date.isEqual(today);
+        builder.isWeekend = dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY;
+
+        builder.solarRiseText = ResourceMapper.formatTime( context, zoneId,
+                day.getPlanetaryData().getSolarRiseSet().getRise() );
+        builder.solarSetText = ResourceMapper.formatTime( context, zoneId,
+                day.getPlanetaryData().getSolarRiseSet().getSet() );
+
+        builder.setLunarRiseSet(day, context, zoneId);
+
+        final LunarPhase phase = day.getPlanetaryData().getLunarPhase();
+        if (phase != null) {
+            builder.lunarPhaseIcon = ResourceMapper.getImageId(phase);
+            builder.lunarPhaseText = context.getString( ResourceMapper.getStringId(phase) );
+        }
+
+        final ZodiacSign sign = day.getZodiacData().getSign();
+        builder.zodiacSignIcon = ResourceMapper.getImageId(sign);
+        builder.zodiacSignText = context.getString( ResourceMapper.getStringId(sign) );
+
+        final ZodiacDirection direction = day.getZodiacData().getDirection();
+        builder.zodiacDirectionIcon = ResourceMapper.getImageId(direction);
+        builder.zodiacDirectionText = context.getString( ResourceMapper.getStringId(direction) );
+
+        final ZodiacElement element = day.getZodiacData().getElement();
+        builder.zodiacElementIcon = ResourceMapper.getImageId(element);
+        builder.zodiacElementText = context.getString( ResourceMapper.getStringId(element) );
+
+        final InterpretationResult interpretation =
+                interpreter == null ? null : interpreter.interpret(day, profile, context);
+
+        if (interpretation != null) {
+            builder.interpretationIcon = interpretation.getQualityIcon();
+            builder.interpretationQualityText = interpretation.getQualityText();
+            builder.interpretationAnnotations = interpretation.getAnnotations();
+        }
+
+        if ( !comparedInterpreters.isEmpty() ) {
+            builder.setComparison( QualityVector.of(day, profile, context), comparedInterpreters,
+                    context );
+        }
+
+        return new DayRenderModel(builder);
+    }
+
+    Day getDay() {
+        return this.day;
+    }
+
+    LocalDate getDate() {
+        return this.date;
+    }
+
+    /**
+     * Tells if this model can be reused for a day - e.g. for the copy of a day in an extended
+     * calendar. Days are compared by the data the model displays, not by identity, while
+     * interpretations only depend on that data. Settings like the zone aren't checked.
+     */
+    boolean isCreatedFrom(Day day) {
+        return this.date.equals( day.getDate() )
+                && this.lunarPhase == day.getPlanetaryData().getLunarPhase()
+                && this.zodiacSign == day.getZodiacData().getSign()
+                && this.zodiacDirection == day.getZodiacData().getDirection()
+                && this.solarRise.equals( day.getPlanetaryData().getSolarRiseSet().getRise() )
+                && this.solarSet.equals( day.getPlanetaryData().getSolarRiseSet().getSet() )
+                && this.lunarRise.equals( day.getPlanetaryData().getLunarRiseSet().getRise() )
+                && this.lunarSet.equals( day.getPlanetaryData().getLunarRiseSet().getSet() );
+    }
+
+    String getDayOfWeekText() {
+        return this.dayOfWeekText;
+    }
+
+    String getDateText() {
+        return this.dateText;
+    }
+
+    boolean isToday() {
+        return this.isToday;
+    }
+
+    boolean isWeekend() {
+        return this.isWeekend;
+    }
+
+    String getSolarRiseText() {
+        return this.solarRiseText;
+    }
+
+    String getSolarSetText() {
+        return this.solarSetText;
+    }
+
+    int getLunarRiseSetFirstIcon() {
+        return this.lunarRiseSetFirstIcon;
+    }
+
+    String getLunarRiseSetFirstDescription() {
+        return this.lunarRiseSetFirstDescription;
+    }
+
+    String getLunarRiseSetFirstText() {
+        return this.lunarRiseSetFirstText;
+    }
+
+    /** @return true if the moon rises and sets at this day */
+    boolean hasSecondLunarRiseSet() {
+        return this.lunarRiseSetSecondIcon != 0;
+    }
+
+    int getLunarRiseSetSecondIcon() {
+        return this.lunarRiseSetSecondIcon;
+    }
+
+    String getLunarRiseSetSecondDescription() {
+        return this.lunarRiseSetSecondDescription;
+    }
+
+    String getLunarRiseSetSecondText() {
+        return this.lunarRiseSetSecondText;
+    }
+
+    /** @return the icon of the lunar phase or 0 if it's unknown */
+    int getLunarPhaseIcon() {
+        return this.lunarPhaseIcon;
+    }
+
+    String getLunarPhaseText() {
+        return this.lunarPhaseText;
+    }
+
+    int getZodiacSignIcon() {
+        return this.zodiacSignIcon;
+    }
+
+    String getZodiacSignText() {
+        return this.zodiacSignText;
+    }
+
+    int getZodiacDirectionIcon() {
+        return this.zodiacDirectionIcon;
+    }
+
+    String getZodiacDirectionText() {
+        return this.zodiacDirectionText;
+    }
+
+    int getZodiacElementIcon() {
+        return this.zodiacElementIcon;
+    }
+
+    String getZodiacElementText() {
+        return this.zodiacElementText;
+    }
+
+    /** @return the quality icon of the selected interpreter or 0 if there is none */
+    int getInterpretationIcon() {
+        return this.interpretationIcon;
+    }
+
+    String getInterpretationQualityText() {
+        return this.interpretationQualityText;
+    }
+
+    String getInterpretationAnnotations() {
+        return this.interpretationAnnotations;
+    }
+
+    /** @return the number of compared interpreters - 0 if comparison is off */
+    int getComparisonCount() {
+        return this.comparisonNames.length;
+    }
+
+    String getComparisonName(int index) {
+        return this.comparisonNames[index];
+    }
+
+    /** @return the quality icon or 0 if the day is neutral or couldn't be interpreted */
+    int getComparisonIcon(int index) {
+        return this.comparisonIcons[index];
+    }
+
+    String getComparisonQualityText(int index) {
+        return this.comparisonQualityTexts[index];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+            return true;
+        }
+
+        if ( !(o instanceof DayRenderModel) ) {
+            return false;
+        }
+
+        final DayRenderModel other = (DayRenderModel) o;
+
+        return this.isToday == other.isToday
+                && this.isWeekend == other.isWeekend
+                && this.lunarRiseSetFirstIcon == other.lunarRiseSetFirstIcon
+                && this.lunarRiseSetSecondIcon == other.lunarRiseSetSecondIcon
+                && this.lunarPhaseIcon == other.lunarPhaseIcon
+                && this.zodiacSignIcon == other.zodiacSignIcon
+                && this.zodiacDirectionIcon == other.zodiacDirectionIcon
+                && this.zodiacElementIcon == other.zodiacElementIcon
+                && this.interpretationIcon == other.interpretationIcon
+                && this.date.equals(other.date)
+                && this.dayOfWeekText.equals(other.dayOfWeekText)
+                && this.dateText.equals(other.dateText)
+                && this.solarRiseText.equals(other.solarRiseText)
+                && this.solarSetText.equals(other.solarSetText)
+                && this.lunarRiseSetFirstDescription.equals(other.lunarRiseSetFirstDescription)
+                && this.lunarRiseSetFirstText.equals(other.lunarRiseSetFirstText)
+                && this.lunarRiseSetSecondDescription.equals(other.lunarRiseSetSecondDescription)
+                && this.lunarRiseSetSecondText.equals(other.lunarRiseSetSecondText)
+                && this.lunarPhaseText.equals(other.lunarPhaseText)
+                && this.zodiacSignText.equals(other.zodiacSignText)
+                && this.zodiacDirectionText.equals(other.zodiacDirectionText)
+                && this.zodiacElementText.equals(other.zodiacElementText)
+                && this.interpretationQualityText.equals(other.interpretationQualityText)
+                && this.interpretationAnnotations.equals(other.interpretationAnnotations)
+                && Arrays.equals(this.comparisonIcons, other.comparisonIcons)
+                && Arrays.equals(this.comparisonNames, other.comparisonNames)
+                && Arrays.equals(this.comparisonQualityTexts, other.comparisonQualityTexts);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash( this.date, this.solarRiseText, this.lunarRiseSetFirstText,
+                this.interpretationIcon, this.interpretationAnnotations );
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return this.date.toString();
+    }
+
+    /** Collects the values while a model is created */
+    private static class Builder {
+
+        private final Day day;
+
+        private String dayOfWeekText;
+        private String dateText;
+        private boolean isToday;
+        private boolean isWeekend;
+
+        private String solarRiseText;
+        private String solarSetText;
+
+        private int lunarRiseSetFirstIcon;
+        private String lunarRiseSetFirstDescription;
+        private String lunarRiseSetFirstText;
+        private int lunarRiseSetSecondIcon = 0;
+        private String lunarRiseSetSecondDescription = "";
+        private String lunarRiseSetSecondText = "";
+
+        private int lunarPhaseIcon = 0;
+        private String lunarPhaseText = "";
+        private int zodiacSignIcon;
+        private String zodiacSignText;
+        private int zodiacDirectionIcon;
+        private String zodiacDirectionText;
+        private int zodiacElementIcon;
+        private String zodiacElementText;
+
+        private int interpretationIcon = 0;
+        private String interpretationQualityText = "";
+        private String interpretationAnnotations = "";
+
+        private String[] comparisonNames = new String[0];
+        private int[] comparisonIcons = new int[0];
+        private String[] comparisonQualityTexts = new String[0];
+
+        private Builder(Day day) {
+            this.day = day;
+        }
+
+        /** Reads the qualities from the vector, so no interpreter needs to be asked again */
+        private void setComparison(QualityVector qualities, List<MappedInterpreter> interpreters,
+                                   Context context) {
+
+            this.comparisonNames = new String[interpreters.size()];
+            this.comparisonIcons = new int[interpreters.size()];
+            this.comparisonQualityTexts = new String[interpreters.size()];
+
+            for (int i = 0; i < interpreters.size(); i++) {
+
+                final MappedInterpreter interpreter = interpreters.get(i);
+                final Quality quality = qualities.get(interpreter);
+
+                // The resource id is used to get the name in the current language
+                this.comparisonNames[i] = context.getString( interpreter.getId() );
+
+                if (quality == null || quality == Quality.NEUTRAL) {
+                    this.comparisonQualityTexts[i] = "";
+                } else {
+                    this.comparisonIcons[i] = ResourceMapper.getImageId(quality);
+                    this.comparisonQualityTexts[i] =
+                            context.getString( ResourceMapper.getStringId(quality) );
+                }
+            }
+        }
+
+        private void setLunarRiseSet(Day day, Context context, ZoneId zoneId) {
+
+            final Instant rise = day.getPlanetaryData().getLunarRiseSet().getRise();
+            final String localRise = ResourceMapper.formatTime(context, zoneId, rise);
+
+            final Instant set = day.getPlanetaryData().getLunarRiseSet().getSet();
+            final String localSet = ResourceMapper.formatTime(context, zoneId, set);
+
+            final String riseDescription = context.getString(R.string.description_lunar_rise);
+            final String setDescription = context.getString(R.string.description_lunar_set);
+
+            // We can have four cases:
+            if ( !day.getDate().isEqual(LocalDate.from(rise)) ) {
+
+                // 1. No rise
+                this.setFirst(R.drawable.lunar_set, setDescription, localSet);
+
+            } else if ( !day.getDate().isEqual(LocalDate.from(set)) ) {
+
+                // 2. No set
+                this.setFirst(R.drawable.lunar_rise, riseDescription, localRise);
+
+            } else if ( rise.isBefore(set) ) {
+
+                // 3. First rise, then set
+                this.setFirst(R.drawable.lunar_rise, riseDescription, localRise);
+                this.setSecond(R.drawable.lunar_set, setDescription, localSet);
+
+            } else {
+
+                // 4. Set is before rise
+                this.setFirst(R.drawable.lunar_set, setDescription, localSet);
+                this.setSecond(R.drawable.lunar_rise, riseDescription, localRise);
+            }
+        }
+
+        private void setFirst(int icon, String description, String text) {
+            this.lunarRiseSetFirstIcon = icon;
+            this.lunarRiseSetFirstDescription = description;
+            this.lunarRiseSetFirstText = text;
+        }
+
+        private void setSecond(int icon, String description, String text) {
+            this.lunarRiseSetSecondIcon = icon;
+            this.lunarRiseSetSecondDescription = description;
+            this.lunarRiseSetSecondText = text;
+        }
+    }
+}
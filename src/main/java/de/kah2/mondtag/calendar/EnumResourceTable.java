@@ -0,0 +1,91 @@
+package de.kah2.mondtag.calendar;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the constants of an enum to string- and image-resources using arrays indexed by
+ * {@link Enum#ordinal()}, so a lookup neither hashes nor boxes anything. Tables are filled once
+ * during class initialization of {@link ResourceMapper} and only read afterwards.
+ * @param <E> the mapped enum
+ */
+class EnumResourceTable<E extends Enum<E>> {
+
+    private final Class<E> enumClass;
+
+    private final int[] stringIds;
+
+    private final int[] imageIds;
+
+    EnumResourceTable(Class<E> enumClass) {
+
+        this.enumClass = enumClass;
+
+        final int size = enumClass.getEnumConstants().length;
+        this.stringIds = new int[size];
+        this.imageIds = new int[size];
+    }
+
+    void put(E key, int imageId, int stringId) {
+        this.imageIds[key.ordinal()] = imageId;
+        this.stringIds[key.ordinal()] = stringId;
+    }
+
+    void putString(E key, int stringId) {
+        this.put(key, 0, stringId);
+    }
+
+    /** @return the string-id or 0 if the key isn't mapped */
+    int getStringId(E key) {
+        return this.stringIds[key.ordinal()];
+    }
+
+    /** @return the image-id or 0 if the key has no image */
+    int getImageId(E key) {
+        return this.imageIds[key.ordinal()];
+    }
+
+    /**
+     * Maps every constant that wasn't mapped to a fallback string without image - called after the
+     * table was filled, so a constant added to libZodiac is still displayed.
+     * @param fallbackStringId the string-id of constants without resources
+     * @param unmapped constants, which intentionally have no resources - they stay unmapped
+     * @return the constants that got the fallback
+     */
+    @SafeVarargs
+    final List<E> complete(int fallbackStringId, E... unmapped) {
+
+        final List<E> missing = new LinkedList<>();
+
+        for (E key : this.enumClass.getEnumConstants()) {
+
+            if (this.stringIds[key.ordinal()] != 0) {
+                continue;
+            }
+
+            boolean isExcluded = false;
+            for (E excluded : unmapped) {
+                isExcluded |= (excluded == key);
+            }
+
+            if (!isExcluded) {
+                missing.add(key);
+                this.putString(key, fallbackStringId);
+            }
+        }
+
+        return missing;
+    }
+
+    /** Adds the string-ids of all mapped constants to a map using their names as keys */
+    void putStringIdsByName(Map<String, Integer> target) {
+
+        for (E key : this.enumClass.getEnumConstants()) {
+
+            if (this.stringIds[key.ordinal()] != 0) {
+                target.put( key.toString(), this.stringIds[key.ordinal()] );
+            }
+        }
+    }
+}
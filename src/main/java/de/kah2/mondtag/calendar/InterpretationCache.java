@@ -0,0 +1,86 @@
+package de.kah2.mondtag.calendar;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import de.kah2.mondtag.datamanagement.LocationProfile;
+
+/**
+ * A bounded cache of {@link InterpretationResult}s - when it's full, the least recently used result
+ * gets evicted. All methods are thread safe.
+ * <p>Results are keyed by date, profile, interpreter and locale: The data of a day depends on the
+ * date and the {@link LocationProfile} it was calculated for - rise and set times differ between
+ * positions of the same zone. The texts of a result depend on the locale.</p>
+ */
+class InterpretationCache {
+
+    /** Enough to hold the results of all interpreters for more than a year */
+    final static int DEFAULT_MAX_ENTRIES = 4096;
+
+    private final LinkedHashMap<Key, InterpretationResult> results;
+
+    InterpretationCache(int maxEntries) {
+
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache size must be positive but is " + maxEntries);
+        }
+
+        // Access order makes iteration start at the least recently used entry
+        this.results = new LinkedHashMap<Key, InterpretationResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, InterpretationResult> eldest) {
+                return this.size() > maxEntries;
+            }
+        };
+    }
+
+    /** @return the cached result or null if there is none */
+    synchronized InterpretationResult get(LocalDate date, LocationProfile profile,
+                                          int interpreterNameId, Locale locale) {
+        return this.results.get( new Key(date, profile, interpreterNameId, locale) );
+    }
+
+    synchronized void put(LocalDate date, LocationProfile profile, Locale locale,
+                          InterpretationResult result) {
+        this.results.put( new Key(date, profile, result.getInterpreterNameId(), locale), result );
+    }
+
+    private static class Key {
+
+        private final LocalDate date;
+        private final LocationProfile profile;
+        private final int interpreterNameId;
+        private final Locale locale;
+
+        private Key(LocalDate date, LocationProfile profile, int interpreterNameId,
+                    Locale locale) {
+            this.date = date;
+            this.profile = profile;
+            this.interpreterNameId = interpreterNameId;
+            this.locale = locale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if ( !(o instanceof Key) ) {
+                return false;
+            }
+
+            final Key other = (Key) o;
+
+            return this.interpreterNameId == other.interpreterNameId
+                    && this.date.equals(other.date)
+                    && this.profile.equals(other.profile)
+                    && this.locale.equals(other.locale);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.date, this.profile, this.interpreterNameId, this.locale);
+        }
+    }
+}
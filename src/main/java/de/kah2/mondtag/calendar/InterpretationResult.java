@@ -0,0 +1,76 @@
+package de.kah2.mondtag.calendar;
+
+import java.util.Comparator;
+
+import de.kah2.zodiac.libZodiac4A.interpretation.Interpreter.Quality;
+
+/**
+ * The immutable result of interpreting a day by a {@link MappedInterpreter}: the quality and the
+ * translated strings to display. Results are cached, so they can be shared by all threads and
+ * views.
+ * @see MappedInterpreter#interpret(de.kah2.zodiac.libZodiac4A.Day,
+ * de.kah2.mondtag.datamanagement.LocationProfile, android.content.Context)
+ */
+class InterpretationResult {
+
+    private final int interpreterNameId;
+
+    private final Quality quality;
+
+    private final int qualityIcon;
+
+    private final String qualityText;
+
+    private final String annotations;
+
+    /**
+     * @param interpreterNameId the string resource id of the interpreter name
+     * @param qualityIcon the image resource id of the quality icon or 0 if the quality is neutral
+     * @param qualityText the translated quality or "" if it's neutral
+     * @param annotations the translated annotations separated by " | " or "" if there are none
+     */
+    InterpretationResult(int interpreterNameId, Quality quality, int qualityIcon,
+                         String qualityText, String annotations) {
+        this.interpreterNameId = interpreterNameId;
+        this.quality = quality;
+        this.qualityIcon = qualityIcon;
+        this.qualityText = qualityText;
+        this.annotations = annotations;
+    }
+
+    /** @return the string resource id of the name of the interpreter that created this result */
+    int getInterpreterNameId() {
+        return this.interpreterNameId;
+    }
+
+    Quality getQuality() {
+        return this.quality;
+    }
+
+    /** @return the image resource id of the quality icon or 0 if the quality is neutral */
+    int getQualityIcon() {
+        return this.qualityIcon;
+    }
+
+    String getQualityText() {
+        return this.qualityText;
+    }
+
+    String getAnnotations() {
+        return this.annotations;
+    }
+
+    boolean isQualityNeutral() {
+        return this.quality == Quality.NEUTRAL;
+    }
+
+    /**
+     * Comparator to sort results by their {@link Quality}: Best qualities first, worst last.
+     */
+    static class QualityComparator implements Comparator<InterpretationResult> {
+        @Override
+        public int compare(InterpretationResult result1, InterpretationResult result2) {
+            return result2.quality.compareTo(result1.quality);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package de.kah2.mondtag.calendar;
+
+import android.app.AlertDialog;
+import android.app.Dialog;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.fragment.app.DialogFragment;
+import androidx.fragment.app.FragmentManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.kah2.mondtag.R;
+
+/**
+ * Lets the user choose several interpreters - e.g. to search the best days for them or to compare
+ * them in the calendar. The chosen interpreters are passed to the parent fragment, which must
+ * implement {@link ChoiceListener}.
+ */
+public class InterpreterChoiceDialogFragment extends DialogFragment {
+
+    private static final String TAG = InterpreterChoiceDialogFragment.class.getSimpleName();
+
+    /** Choose interpreters to search the best days for - see {@link BestDaysSearch} */
+    static final int REQUEST_BEST_DAYS = 1;
+
+    /** Choose interpreters to compare in the calendar - see {@link QualityVector} */
+    static final int REQUEST_COMPARE = 2;
+
+    private static final String BUNDLE_KEY_REQUEST =
+            InterpreterChoiceDialogFragment.class.getName() + ".request";
+
+    private static final String BUNDLE_KEY_INITIAL_IDS =
+            InterpreterChoiceDialogFragment.class.getName() + ".initialIds";
+
+    private static final String BUNDLE_KEY_CHECKED =
+            InterpreterChoiceDialogFragment.class.getName() + ".checked";
+
+    /** Checked state of the interpreters in the order of {@link InterpreterManager#getIds()} */
+    private boolean[] checked;
+
+    /**
+     * @param request {@link #REQUEST_BEST_DAYS} or {@link #REQUEST_COMPARE}
+     * @param initialIds the resource ids of the interpreters checked initially
+     */
+    static InterpreterChoiceDialogFragment create(int request, List<Integer> initialIds) {
+
+        final int[] ids = new int[initialIds.size()];
+
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = initialIds.get(i);
+        }
+
+        final Bundle arguments = new Bundle();
+        arguments.putInt(BUNDLE_KEY_REQUEST, request);
+        arguments.putIntArray(BUNDLE_KEY_INITIAL_IDS, ids);
+
+        final InterpreterChoiceDialogFragment fragment = new InterpreterChoiceDialogFragment();
+        fragment.setArguments(arguments);
+
+        return fragment;
+    }
+
+    void show(FragmentManager fragmentManager) {
+        super.show(fragmentManager, TAG);
+    }
+
+    @Override
+    public Dialog onCreateDialog(Bundle savedInstanceState) {
+
+        final Context context = this.requireContext();
+        final int request = this.requireArguments().getInt(BUNDLE_KEY_REQUEST);
+        final List<Integer> ids = InterpreterManager.getIds();
+
+        final String[] names = new String[ids.size()];
+
+        for (int i = 0; i < names.length; i++) {
+            names[i] = context.getString( ids.get(i) );
+        }
+
+        if (savedInstanceState != null) {
+            this.checked = savedInstanceState.getBooleanArray(BUNDLE_KEY_CHECKED);
+        }
+
+        if (this.checked == null || this.checked.length != ids.size()) {
+            this.checked = this.getInitiallyChecked(ids);
+        }
+
+        final AlertDialog.Builder builder = new AlertDialog.Builder(context)
+                .setMultiChoiceItems(names, this.checked,
+                        (dialog, which, isChecked) -> this.checked[which] = isChecked)
+                .setNegativeButton(android.R.string.cancel, null);
+
+        if (request == REQUEST_COMPARE) {
+
+            builder.setTitle(R.string.compare_title)
+                    .setPositiveButton(R.string.compare_button,
+                            (dialog, which) -> this.submitChoice(request, ids));
+
+        } else {
+
+            builder.setTitle(R.string.best_days_title)
+                    .setPositiveButton(R.string.best_days_search,
+                            (dialog, which) -> this.submitChoice(request, ids));
+        }
+
+        return builder.create();
+    }
+
+    private boolean[] getInitiallyChecked(List<Integer> ids) {
+
+        final int[] initialIds = this.requireArguments().getIntArray(BUNDLE_KEY_INITIAL_IDS);
+
+        final boolean[] initiallyChecked = new boolean[ids.size()];
+
+        for (int i = 0; i < initiallyChecked.length; i++) {
+            for (int id : initialIds) {
+                initiallyChecked[i] |= ids.get(i) == id;
+            }
+        }
+
+        return initiallyChecked;
+    }
+
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putBooleanArray(BUNDLE_KEY_CHECKED, this.checked);
+    }
+
+    private void submitChoice(int request, List<Integer> ids) {
+
+        final List<Integer> chosen = new ArrayList<>();
+
+        for (int i = 0; i < this.checked.length; i++) {
+            if (this.checked[i]) {
+                chosen.add( ids.get(i) );
+            }
+        }
+
+        if (this.getParentFragment() instanceof ChoiceListener) {
+            ((ChoiceListener) this.getParentFragment()).onInterpretersChosen(request, chosen);
+        } else {
+            Log.e(TAG, "submitChoice: parent fragment doesn't listen for choices");
+        }
+    }
+
+    /** Receives the interpreters the user has chosen. */
+    interface ChoiceListener {
+
+        /**
+         * @param request the request passed to {@link #create(int, List)}
+         * @param interpreterIds the resource ids of the chosen interpreters sorted by name - may be
+         *                       empty
+         */
+        void onInterpretersChosen(int request, List<Integer> interpreterIds);
+    }
+}
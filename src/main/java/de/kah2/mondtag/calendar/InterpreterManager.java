@@ -1,48 +1,90 @@
 package de.kah2.mondtag.calendar;
 
 import android.content.Context;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Supplier;
 
 import de.kah2.mondtag.R;
+import de.kah2.mondtag.datamanagement.LocationProfile;
+import de.kah2.mondtag.datamanagement.StoredInterpretation;
 import de.kah2.zodiac.libZodiac4A.Day;
 import de.kah2.zodiac.libZodiac4A.interpretation.Gardening;
 import de.kah2.zodiac.libZodiac4A.interpretation.Interpreter;
+import de.kah2.zodiac.libZodiac4A.interpretation.Interpreter.Quality;
 
 /**
  * This class manages the {@link MappedInterpreter}s to map String-IDs to {@link Interpreter}s.
  * Static method {@link #init(Context)} must be called at app start to initialize these interpreters
  * using the android resource-IDs.
+ * <p>The mappings are kept in an immutable {@link Registry}, so all methods can be called by any
+ * thread. Since mappings are stateless, they are shared instead of copied.</p>
  */
 public class InterpreterManager {
 
-    private static LinkedList<MappedInterpreter> interpreters;
+    private static volatile Registry registry;
 
     public static void init(Context context) {
 
-        interpreters = new LinkedList<>();
+        final List<MappedInterpreter> interpreters = new ArrayList<>();
 
-        interpreters.add( new MappedInterpreter(R.string.interpret_Gardening_CombatPests, context.getString(R.string.interpret_Gardening_CombatPests), Gardening.CombatPestsInterpreter.class) );
-        interpreters.add( new MappedInterpreter(R.string.interpret_Gardening_CuttingTransplant, context.getString(R.string.interpret_Gardening_CuttingTransplant), Gardening.CuttingTransplantInterpreter.class) );
-        interpreters.add( new MappedInterpreter(R.string.interpret_Gardening_Fertilize, context.getString(R.string.interpret_Gardening_Fertilize), Gardening.FertilizeInterpreter.class) );
-        interpreters.add( new MappedInterpreter(R.string.interpret_Gardening_Graft, context.getString(R.string.interpret_Gardening_Graft), Gardening.GraftInterpreter.class) );
-        interpreters.add( new MappedInterpreter(R.string.interpret_Gardening_Harvest, context.getString(R.string.interpret_Gardening_Harvest), Gardening.HarvestInterpreter.class) );
-        interpreters.add( new MappedInterpreter(R.string.interpret_Gardening_MowLawn, context.getString(R.string.interpret_Gardening_MowLawn), Gardening.MowLawnInterpreter.class) );
-        interpreters.add( new MappedInterpreter(R.string.interpret_Gardening_SowPlant, context.getString(R.string.interpret_Gardening_SowPlant), Gardening.SowPlantInterpreter.class) );
-        interpreters.add( new MappedInterpreter(R.string.interpret_Gardening_Trim, context.getString(R.string.interpret_Gardening_Trim), Gardening.TrimInterpreter.class) );
-        interpreters.add( new MappedInterpreter(R.string.interpret_Gardening_Water, context.getString(R.string.interpret_Gardening_Water), Gardening.WaterInterpreter.class) );
-        interpreters.add( new MappedInterpreter(R.string.interpret_Gardening_WeedControl, context.getString(R.string.interpret_Gardening_WeedControl), Gardening.WeedControlInterpreter.class) );
+        add( interpreters, context, R.string.interpret_Gardening_CombatPests, Gardening.CombatPestsInterpreter::new );
+        add( interpreters, context, R.string.interpret_Gardening_CuttingTransplant, Gardening.CuttingTransplantInterpreter::new );
+        add( interpreters, context, R.string.interpret_Gardening_Fertilize, Gardening.FertilizeInterpreter::new );
+        add( interpreters, context, R.string.interpret_Gardening_Graft, Gardening.GraftInterpreter::new );
+        add( interpreters, context, R.string.interpret_Gardening_Harvest, Gardening.HarvestInterpreter::new );
+        add( interpreters, context, R.string.interpret_Gardening_MowLawn, Gardening.MowLawnInterpreter::new );
+        add( interpreters, context, R.string.interpret_Gardening_SowPlant, Gardening.SowPlantInterpreter::new );
+        add( interpreters, context, R.string.interpret_Gardening_Trim, Gardening.TrimInterpreter::new );
+        add( interpreters, context, R.string.interpret_Gardening_Water, Gardening.WaterInterpreter::new );
+        add( interpreters, context, R.string.interpret_Gardening_WeedControl, Gardening.WeedControlInterpreter::new );
 
         Collections.sort(interpreters, new MappedInterpreter.NameComparator());
+
+        registry = new Registry(interpreters);
+    }
+
+    private static void add(List<MappedInterpreter> interpreters, Context context, int nameId,
+                            Supplier<? extends Interpreter> factory) {
+        interpreters.add( new MappedInterpreter(nameId, context.getString(nameId), factory) );
+    }
+
+    /** @return all mappings sorted by name - the list can't be modified */
+    public static List<MappedInterpreter> getInterpreters() {
+        return getRegistry().interpreters;
+    }
+
+    /**
+     * Makes interpretations loaded from database available to the views, so stored days don't
+     * need to be interpreted again. Results of unknown interpreters are ignored.
+     * @param profile the profile the interpretations were stored for
+     */
+    public static void importInterpretations(List<StoredInterpretation> interpretations,
+                                             LocationProfile profile, Context context) {
+
+        final Registry current = getRegistry();
+
+        for (StoredInterpretation stored : interpretations) {
+
+            final MappedInterpreter mapping = current.byKey.get(stored.getInterpreterKey());
+
+            if (mapping != null) {
+                mapping.importResult(stored, profile, context);
+            }
+        }
     }
 
     static List<Integer> getIds() {
 
-        checkInterpreters();
+        final List<MappedInterpreter> interpreters = getRegistry().interpreters;
 
-        final LinkedList<Integer> keys = new LinkedList<>();
+        final List<Integer> keys = new ArrayList<>(interpreters.size());
 
         for (MappedInterpreter mapping : interpreters) {
             keys.add( mapping.getId() );
@@ -52,55 +94,99 @@ public class InterpreterManager {
     }
 
     /**
-     * @return a clone of the mapping to prevent external modification or null when there's no
-     * interpreter with the given id
+     * @return the position of the interpreter within {@link #getInterpreters()} or -1 when
+     * there's no interpreter with the given id
+     * @see QualityVector
+     */
+    static int getIndex(int id) {
+        return getRegistry().indexById.get(id, -1);
+    }
+
+    /**
+     * @return the mapping or null when there's no interpreter with the given id
      */
     static MappedInterpreter getInterpreter(int id) {
+        return getRegistry().byId.get(id);
+    }
+
+    /**
+     * Returns the interpretations of a day that aren't neutral sorted by quality. The
+     * {@link QualityVector} of the day tells which interpreters aren't neutral, so only their
+     * results are looked up.
+     * Used to show all interpretations id {@link DayDetailFragment}.
+     * @param profile the profile the day was calculated for
+     * @see InterpretationResult.QualityComparator
+     */
+    static LinkedList<InterpretationResult> getAllInterpretations(Day day,
+                                                                  LocationProfile profile,
+                                                                  Context context) {
 
-        checkInterpreters();
+        final List<MappedInterpreter> interpreters = getRegistry().interpreters;
+        final QualityVector qualities = QualityVector.of(day, profile, context);
 
-        for (MappedInterpreter mapping : interpreters) {
+        final LinkedList<InterpretationResult> results = new LinkedList<>();
+
+        for (int i = 0; i < qualities.size(); i++) {
+
+            final Quality quality = qualities.get(i);
+
+            if (quality == null || quality == Quality.NEUTRAL) {
+                continue;
+            }
 
-            if (mapping.getId() == id) {
+            final InterpretationResult result =
+                    interpreters.get(i).interpret(day, profile, context);
 
-                // return a copy to prevent modification of the original
-                return new MappedInterpreter( mapping );
+            if (result != null) {
+                results.addLast(result);
             }
         }
 
-        return null;
+        Collections.sort(results, new InterpretationResult.QualityComparator());
+
+        return results;
+    }
+
+    private static Registry getRegistry() {
+
+        final Registry current = registry;
+
+        if (current == null) {
+            throw new IllegalStateException( "No data - forgot to call init()?" );
+        }
+
+        return current;
     }
 
     /**
-     * Uses copies of all InterpreterMappings and returns a list of interpretations that aren't
-     * neutral sorted by quality.
-     * Used to show all interpretations id {@link DayDetailFragment}.
-     * @see MappedInterpreter.QualityComparator
+     * Holds the mappings indexed by resource id and by the key their results are stored with. It's
+     * never modified after construction, so it can be read by multiple threads.
      */
-    static LinkedList<MappedInterpreter> getAllInterpretations(Day day, Context context) {
+    private static class Registry {
 
-        checkInterpreters();
+        private final List<MappedInterpreter> interpreters;
 
-        final LinkedList<MappedInterpreter> results = new LinkedList<>();
+        private final SparseArray<MappedInterpreter> byId;
 
-        for (MappedInterpreter interpreter : interpreters) {
+        private final SparseIntArray indexById;
 
-            final MappedInterpreter clone = new MappedInterpreter( interpreter );
-            clone.interpret(day, context);
+        private final HashMap<String, MappedInterpreter> byKey;
 
-            if (!clone.isQualityNeutral()) {
-                results.addLast(clone);
-            }
-        }
+        private Registry(List<MappedInterpreter> sortedInterpreters) {
 
-        Collections.sort(results, new MappedInterpreter.QualityComparator());
+            this.interpreters = Collections.unmodifiableList( new ArrayList<>(sortedInterpreters) );
+            this.byId = new SparseArray<>( sortedInterpreters.size() );
+            this.indexById = new SparseIntArray( sortedInterpreters.size() );
+            this.byKey = new HashMap<>();
 
-        return results;
-    }
+            for (int i = 0; i < sortedInterpreters.size(); i++) {
 
-    private static void checkInterpreters() {
-        if (interpreters == null) {
-            throw new IllegalStateException( "No data - forgot to call init()?" );
+                final MappedInterpreter mapping = sortedInterpreters.get(i);
+
+                this.byId.put( mapping.getId(), mapping );
+                this.indexById.put( mapping.getId(), i );
+                this.byKey.put( mapping.getKey(), mapping );
+            }
         }
     }
 }
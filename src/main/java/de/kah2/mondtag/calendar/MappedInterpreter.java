@@ -4,9 +4,16 @@ import android.content.Context;
 import android.text.TextUtils;
 import android.util.Log;
 
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
 
+import de.kah2.mondtag.datamanagement.DataManager;
+import de.kah2.mondtag.datamanagement.LocationProfile;
+import de.kah2.mondtag.datamanagement.StoredInterpretation;
 import de.kah2.zodiac.libZodiac4A.Day;
 import de.kah2.zodiac.libZodiac4A.interpretation.Interpreter;
 import de.kah2.zodiac.libZodiac4A.interpretation.Interpreter.Quality;
@@ -16,11 +23,18 @@ import de.kah2.zodiac.libZodiac4A.interpretation.Interpreter.Quality;
  * by the views.</p>
  * <p>Because we have multiple subclasses of {@link Interpreter}, we can't inherit from all of them.
  * So we use an instance and delegate the work.</p>
+ * <p>A mapping doesn't keep any interpretation - results are returned as immutable
+ * {@link InterpretationResult}s and cached, so a mapping can be used by multiple threads. Every
+ * thread reuses its own {@link Interpreter} instance created by the factory of the mapping.</p>
  */
 public class MappedInterpreter {
 
     private static final String TAG = MappedInterpreter.class.getSimpleName();
 
+    /** Shared by all mappings - results are keyed by the id of the interpreter */
+    private static final InterpretationCache cache =
+            new InterpretationCache(InterpretationCache.DEFAULT_MAX_ENTRIES);
+
     /** The android-string-resource-id */
     private final int interpreterNameStringId;
 
@@ -30,85 +44,134 @@ public class MappedInterpreter {
      */
     private final String interpreterName;
 
-    private final Class<? extends Interpreter> interpreterClass;
-
-    private Interpreter interpreterInstance;
+    /** See {@link StoredInterpretation#getInterpreterKey(Class)} */
+    private final String key;
 
-    private String qualityText;
-    private String annotations;
-    private int qualityIcon;
-    private boolean isQualityNeutral;
+    /** An interpreter instance per thread - they are reset by every interpretation */
+    private final ThreadLocal<Interpreter> instances;
 
     /**
      * @param nameId the android string resource id
      * @param nameString the translated name to be able to sort the interpreters
-     * @param interpreterClass and the class used to do the interpretation
+     * @param factory and the factory creating the instances used to do the interpretation
      */
     MappedInterpreter(int nameId,
                       String nameString,
-                      Class<? extends Interpreter> interpreterClass ) {
+                      Supplier<? extends Interpreter> factory ) {
 
         this.interpreterNameStringId = nameId;
         this.interpreterName = nameString;
-        this.interpreterClass = interpreterClass;
+        this.instances = ThreadLocal.withInitial(factory);
+        this.key = StoredInterpretation.getInterpreterKey( this.instances.get().getClass() );
     }
 
     /**
-     * To simply clone an {@link MappedInterpreter}. Does not clone interpretation /
-     * {@link Interpreter}-instance.
+     * Interprets a day - or returns the cached result, if the day was interpreted before or its
+     * result was loaded from database.
+     * @param day the {@link Day} object containing the data to interpret.
+     * @param profile the profile the day was calculated for - data of the same date differs
+     *                between profiles
+     * @param context The application context to get resource ids
+     * @return the result or null if the interpretation failed
      */
-    @SuppressWarnings("CopyConstructorMissesField")
-    MappedInterpreter(MappedInterpreter original) {
-        this(original.interpreterNameStringId, original.interpreterName, original.interpreterClass);
+    InterpretationResult interpret( Day day, LocationProfile profile, Context context ) {
+
+        final Locale locale = DataManager.getLocale();
+
+        InterpretationResult result =
+                cache.get(day.getDate(), profile, this.interpreterNameStringId, locale);
+
+        if (result == null) {
+
+            result = this.createResult(day, context);
+
+            if (result != null) {
+                cache.put(day.getDate(), profile, locale, result);
+            }
+        }
+
+        return result;
     }
 
     /**
-     * Creates an interpretation object.
-     * @param day the {@link Day} object containing the data to interpret.
-     * @param context The application context to get resource ids
+     * Adds a result loaded from database to the cache, so the day doesn't need to be interpreted
+     * when it's displayed.
+     * @param profile the profile the result was stored for
      */
-    void interpret( Day day, Context context ) {
+    void importResult(StoredInterpretation stored, LocationProfile profile, Context context) {
+
+        final InterpretationResult result;
 
         try {
 
-            this.interpreterInstance =
-                    this.interpreterClass.newInstance();
-            this.interpreterInstance.setDayAndInterpret(day);
+            result = this.toResult(stored.getQuality(), stored.getAnnotationKeys(), context);
+
+        } catch (IllegalArgumentException e) {
+
+            // Unknown annotations - the day simply gets interpreted again
+            Log.w(TAG, "importResult: skipping result of " + this.interpreterName
+                    + " for " + stored.getDate() + ": " + e.getMessage());
+            return;
+        }
+
+        cache.put(stored.getDate(), profile, DataManager.getLocale(), result);
+    }
+
+    private InterpretationResult createResult(Day day, Context context) {
 
-            this.processInterpreterResults(context);
+        final Interpreter interpreterInstance;
 
-        } catch (Exception e) {
+        try {
+
+            interpreterInstance = this.interpretUncached(day);
 
-            Log.e(TAG, "MappedInterpreter couldn't instantiate interpreter "
+        } catch (RuntimeException e) {
+
+            Log.e(TAG, "MappedInterpreter couldn't interpret day using "
                     + this.interpreterName, e);
+            return null;
         }
+
+        return this.toResult( interpreterInstance.getQuality(),
+                Arrays.asList(interpreterInstance.getAnnotationsAsStringArray()), context );
     }
 
-    private void processInterpreterResults(Context context) {
+    /**
+     * Interprets a day bypassing the cache - used to store results along with days.
+     * @return the interpreter instance of the calling thread, which is only valid until the next
+     * interpretation by this mapping on the same thread
+     */
+    public Interpreter interpretUncached(Day day) {
+
+        final Interpreter interpreterInstance = this.instances.get();
+        interpreterInstance.setDayAndInterpret(day);
 
-        final Quality quality = this.interpreterInstance.getQuality();
+        return interpreterInstance;
+    }
 
-        final Integer[] qualityStringIds = ResourceMapper.getResourceIds( quality );
+    /** Translates quality and annotations using the current locale. */
+    private InterpretationResult toResult(Quality quality, List<String> annotationKeys,
+                                          Context context) {
 
-        // to allow showing name only if quality isn't neutral
-        this.isQualityNeutral = (quality == Quality.NEUTRAL);
+        final int qualityIcon;
+        final String qualityText;
 
-        if ( this.isQualityNeutral ) {
+        // to allow showing name only if quality isn't neutral
+        if ( quality == Quality.NEUTRAL ) {
 
-            this.qualityIcon = 0;
-            this.qualityText = "";
+            qualityIcon = 0;
+            qualityText = "";
 
         } else {
-            this.qualityIcon = qualityStringIds[ResourceMapper.INDEX_IMAGE];
-            this.qualityText = context.getString(qualityStringIds[ResourceMapper.INDEX_STRING]);
+            qualityIcon = ResourceMapper.getImageId(quality);
+            qualityText = context.getString( ResourceMapper.getStringId(quality) );
         }
 
-        final String[] annotationKeys = this.interpreterInstance.getAnnotationsAsStringArray();
+        final String annotations;
 
-        if ( annotationKeys.length == 0 ) {
+        if ( annotationKeys.isEmpty() ) {
 
-            // If the active mapping did some Interpretation before, we have to reset them
-            this.annotations = "";
+            annotations = "";
 
         } else {
 
@@ -116,11 +179,19 @@ public class MappedInterpreter {
 
             for (String key : annotationKeys) {
                 annotationStrings.add( context.getString(
-                        ResourceMapper.getResourceIds(key)[ResourceMapper.INDEX_STRING] ));
+                        ResourceMapper.getAnnotationStringId(key) ));
             }
 
-            this.annotations = TextUtils.join(" | ", annotationStrings);
+            annotations = TextUtils.join(" | ", annotationStrings);
         }
+
+        return new InterpretationResult( this.interpreterNameStringId, quality, qualityIcon,
+                qualityText, annotations );
+    }
+
+    /** @return the key results of this mapping are stored with */
+    public String getKey() {
+        return this.key;
     }
 
     /**
@@ -130,31 +201,17 @@ public class MappedInterpreter {
         return this.interpreterNameStringId;
     }
 
-    /**
-     * @return the image resource id of the quality icon or 0, if
-     */
-    int getQualityIcon() {
-        return this.qualityIcon;
-    }
-
-    String getQualityText() {
-        return this.qualityText;
-    }
-
-    String getAnnotations() {
-        return this.annotations;
-    }
-
-    boolean isQualityNeutral() {
-        return isQualityNeutral;
-    }
-
     @Override
     public boolean equals(Object obj) {
         return obj instanceof MappedInterpreter
             && this.interpreterNameStringId == ((MappedInterpreter) obj).interpreterNameStringId;
     }
 
+    @Override
+    public int hashCode() {
+        return this.interpreterNameStringId;
+    }
+
     /**
      * Comparator to sort by translated name {@link #interpreterName}.
      */
@@ -166,20 +223,4 @@ public class MappedInterpreter {
             return interpreter1.interpreterName.compareTo( interpreter2.interpreterName );
         }
     }
-
-    /**
-     * Comparator to sort {@link MappedInterpreter}s by the calculated
-     * {@link Quality} of their
-     * {@link Interpreter}s: Best qualities first, worst last.
-     * <strong>Be sure to call {@link MappedInterpreter#interpret(Day, Context)} first, to avoid
-     * {@link NullPointerException}s</strong>
-     */
-    public static class QualityComparator implements Comparator<MappedInterpreter> {
-        @Override
-        public int compare(MappedInterpreter interpreter1, MappedInterpreter interpreter2) {
-
-            return interpreter2.interpreterInstance.getQuality().compareTo(
-                    interpreter1.interpreterInstance.getQuality() );
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,113 @@
+package de.kah2.mondtag.calendar;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import de.kah2.mondtag.datamanagement.DataManager;
+import de.kah2.zodiac.libZodiac4A.Day;
+
+/**
+ * Watches the scroll position of the calendar and extends it in background when the user gets
+ * close to its start or end - so the user doesn't need to press the extend button. When scrolling
+ * stops, the calendar gets trimmed to the visible days if it grew too large.
+ * <p>Distances are measured in days of the calendar, not in rows, since a {@link DayFilter} might
+ * hide most of them.</p>
+ * @see DataManager#prefetchFuture()
+ * @see DataManager#trimWindowIfNeeded(LocalDate, LocalDate)
+ */
+class PrefetchScrollListener extends RecyclerView.OnScrollListener {
+
+    /** Distance to the start or end of the calendar that triggers a background extension */
+    private final static int PREFETCH_DISTANCE_DAYS = 7;
+
+    private final DataManager dataManager;
+
+    private final DayRecyclerViewAdapter adapter;
+
+    PrefetchScrollListener(DataManager dataManager, DayRecyclerViewAdapter adapter) {
+        this.dataManager = dataManager;
+        this.adapter = adapter;
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+
+        if (dy == 0) {
+            return;
+        }
+
+        final LinearLayoutManager layoutManager =
+                (LinearLayoutManager) recyclerView.getLayoutManager();
+
+        final List<Day> days = this.dataManager.getDisplayedDays();
+
+        if (layoutManager == null || days.isEmpty()) {
+            return;
+        }
+
+        // Both do nothing if an extension is already running
+        if (dy > 0) {
+
+            LocalDate lastVisible =
+                    this.adapter.getDate( layoutManager.findLastVisibleItemPosition() );
+
+            if (lastVisible == null) {
+                // The extend button is visible
+                lastVisible = this.adapter.getLastDate();
+            }
+
+            final LocalDate end = days.get(days.size() - 1).getDate();
+
+            if (lastVisible == null
+                    || ChronoUnit.DAYS.between(lastVisible, end) < PREFETCH_DISTANCE_DAYS) {
+                this.dataManager.prefetchFuture();
+            }
+
+        } else {
+
+            final LocalDate firstVisible =
+                    this.adapter.getDate( layoutManager.findFirstVisibleItemPosition() );
+
+            final LocalDate start = days.get(0).getDate();
+
+            if (firstVisible != null
+                    && ChronoUnit.DAYS.between(start, firstVisible) < PREFETCH_DISTANCE_DAYS) {
+                this.dataManager.prefetchPast();
+            }
+        }
+    }
+
+    @Override
+    public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+
+        if (newState != RecyclerView.SCROLL_STATE_IDLE) {
+            return;
+        }
+
+        final LinearLayoutManager layoutManager =
+                (LinearLayoutManager) recyclerView.getLayoutManager();
+
+        if (layoutManager == null) {
+            return;
+        }
+
+        final LocalDate first = this.adapter.getDate( layoutManager.findFirstVisibleItemPosition() );
+        LocalDate last = this.adapter.getDate( layoutManager.findLastVisibleItemPosition() );
+
+        if (first == null) {
+            return;
+        }
+
+        if (last == null) {
+            // The extend button is visible
+            last = this.adapter.getLastDate();
+        }
+
+        this.dataManager.trimWindowIfNeeded(first, last);
+    }
+}
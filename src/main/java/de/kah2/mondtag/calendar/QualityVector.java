@@ -0,0 +1,183 @@
+package de.kah2.mondtag.calendar;
+
+import android.content.Context;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import de.kah2.mondtag.datamanagement.LocationProfile;
+import de.kah2.zodiac.libZodiac4A.Day;
+import de.kah2.zodiac.libZodiac4A.interpretation.Interpreter.Quality;
+
+/**
+ * <p>The qualities of a day for all interpreters packed into one <code>long</code>: three bits per
+ * interpreter in the order of {@link InterpreterManager#getInterpreters()}. A value of 0 means the
+ * interpretation failed, otherwise it's {@link Quality#ordinal()} + 1.</p>
+ * <p>Vectors are immutable and cached per date and {@link LocationProfile}, so the calendar list
+ * and {@link DayDetailFragment} share the vector of a day instead of evaluating all interpreters
+ * again. Vectors with a failed interpretation aren't cached, so it's tried again next time.</p>
+ */
+class QualityVector {
+
+    private static final int BITS_PER_QUALITY = 3;
+
+    private static final long MASK = (1L << BITS_PER_QUALITY) - 1;
+
+    /** The number of interpreters fitting into a vector */
+    static final int MAX_INTERPRETERS = Long.SIZE / BITS_PER_QUALITY;
+
+    private static final Quality[] QUALITIES = Quality.values();
+
+    /** Enough to hold the vectors of more than a year */
+    private static final int MAX_CACHED_VECTORS = 512;
+
+    /** The least recently used vector gets evicted when the cache is full */
+    private static final LinkedHashMap<Key, QualityVector> cache =
+            new LinkedHashMap<Key, QualityVector>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, QualityVector> eldest) {
+                    return this.size() > MAX_CACHED_VECTORS;
+                }
+            };
+
+    private final long packed;
+
+    private final int size;
+
+    private QualityVector(long packed, int size) {
+        this.packed = packed;
+        this.size = size;
+    }
+
+    /**
+     * Returns the vector of a day - it's created if it isn't cached. Doesn't access any views, so
+     * it can be called by any thread.
+     * @param profile the profile the day was calculated for
+     */
+    static QualityVector of(Day day, LocationProfile profile, Context context) {
+
+        final Key key = new Key(day.getDate(), profile);
+
+        synchronized (cache) {
+
+            final QualityVector cached = cache.get(key);
+
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        final QualityVector vector = create(day, profile, context);
+
+        if ( vector.isComplete() ) {
+            synchronized (cache) {
+                cache.put(key, vector);
+            }
+        }
+
+        return vector;
+    }
+
+    private static QualityVector create(Day day, LocationProfile profile, Context context) {
+
+        final List<MappedInterpreter> interpreters = InterpreterManager.getInterpreters();
+
+        if (interpreters.size() > MAX_INTERPRETERS) {
+            throw new IllegalStateException( "A vector can't hold more than " + MAX_INTERPRETERS
+                    + " interpreters but there are " + interpreters.size() );
+        }
+
+        long packed = 0;
+
+        for (int i = 0; i < interpreters.size(); i++) {
+
+            final InterpretationResult result =
+                    interpreters.get(i).interpret(day, profile, context);
+
+            if (result != null) {
+                packed |= (long) (result.getQuality().ordinal() + 1) << (i * BITS_PER_QUALITY);
+            }
+        }
+
+        return new QualityVector(packed, interpreters.size());
+    }
+
+    /**
+     * @param index the position of the interpreter within {@link InterpreterManager#getInterpreters()}
+     * @return the quality or null if the interpretation failed
+     */
+    Quality get(int index) {
+
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + this.size);
+        }
+
+        final int value = (int) ((this.packed >>> (index * BITS_PER_QUALITY)) & MASK);
+
+        return value == 0 ? null : QUALITIES[value - 1];
+    }
+
+    /** @return the quality of the interpreter or null if the interpretation failed */
+    Quality get(MappedInterpreter interpreter) {
+        return this.get( InterpreterManager.getIndex(interpreter.getId()) );
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    /** @return true if no interpretation failed */
+    private boolean isComplete() {
+
+        for (int i = 0; i < this.size; i++) {
+            if ( ((this.packed >>> (i * BITS_PER_QUALITY)) & MASK) == 0 ) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof QualityVector
+                && this.packed == ((QualityVector) o).packed
+                && this.size == ((QualityVector) o).size;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.packed);
+    }
+
+    private static class Key {
+
+        private final LocalDate date;
+        private final LocationProfile profile;
+
+        private Key(LocalDate date, LocationProfile profile) {
+            this.date = date;
+            this.profile = profile;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if ( !(o instanceof Key) ) {
+                return false;
+            }
+
+            final Key other = (Key) o;
+
+            return this.date.equals(other.date) && this.profile.equals(other.profile);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.date, this.profile);
+        }
+    }
+}
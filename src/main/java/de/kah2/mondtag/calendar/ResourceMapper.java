@@ -5,14 +5,18 @@ import android.text.format.DateFormat;
 
 import java.time.Instant;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.time.format.TextStyle;
 
 import java.text.SimpleDateFormat;
-import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
 
 import de.kah2.mondtag.R;
 import de.kah2.mondtag.datamanagement.DataManager;
@@ -33,101 +37,201 @@ import de.kah2.zodiac.libZodiac4A.zodiac.ZodiacSign;
 
 public class ResourceMapper {
 
-    public final static int INDEX_IMAGE = 0;
-    public final static int INDEX_STRING = 1;
+    private final static EnumResourceTable<ProgressListener.State> states =
+            new EnumResourceTable<>(ProgressListener.State.class);
 
-    private final static Hashtable<String, Integer[]> mappings = new Hashtable<>();
+    private final static EnumResourceTable<LunarPhase> lunarPhases =
+            new EnumResourceTable<>(LunarPhase.class);
+
+    private final static EnumResourceTable<ZodiacDirection> zodiacDirections =
+            new EnumResourceTable<>(ZodiacDirection.class);
+
+    private final static EnumResourceTable<ZodiacSign> zodiacSigns =
+            new EnumResourceTable<>(ZodiacSign.class);
+
+    private final static EnumResourceTable<ZodiacElement> zodiacElements =
+            new EnumResourceTable<>(ZodiacElement.class);
+
+    private final static EnumResourceTable<Interpreter.Quality> qualities =
+            new EnumResourceTable<>(Interpreter.Quality.class);
+
+    /**
+     * Interpreters only provide their annotations as strings, so these are looked up by name.
+     * Filled during class initialization and only read afterwards.
+     */
+    private final static HashMap<String, Integer> annotations = new HashMap<>();
+
+    /**
+     * Constants of libZodiac without resources, which display {@link R.string#unknown} - see
+     * {@link #getMissingResources()}
+     */
+    private final static List<Enum<?>> missingResources = new ArrayList<>();
+
+    /** The formatters of the last used locale - see {@link #getDateFormatters(Locale)} */
+    private static volatile DateFormatters dateFormatters = null;
+
+    /**
+     * The formatter of the last used settings - see
+     * {@link #getTimeFormatter(Locale, ZoneId, boolean, Supplier)}
+     */
+    private static volatile TimeFormatter timeFormatter = null;
 
     static {
         // data fetching activities
-        putString(ProgressListener.State.IMPORTING, R.string.status_importing);
-        putString(ProgressListener.State.GENERATING, R.string.status_generating);
-        putString(ProgressListener.State.EXTENDING_PAST, R.string.status_extending);
-        putString(ProgressListener.State.EXTENDING_FUTURE, R.string.status_extending);
-        putString(ProgressListener.State.COUNTING, R.string.status_counting);
+        states.putString(ProgressListener.State.IMPORTING, R.string.status_importing);
+        states.putString(ProgressListener.State.GENERATING, R.string.status_generating);
+        states.putString(ProgressListener.State.EXTENDING_PAST, R.string.status_extending);
+        states.putString(ProgressListener.State.EXTENDING_FUTURE, R.string.status_extending);
+        states.putString(ProgressListener.State.COUNTING, R.string.status_counting);
+        // These aren't displayed
+        complete(states, ProgressListener.State.IMPORT_FINISHED, ProgressListener.State.FINISHED);
 
         // Lunar phases
-        putAll(LunarPhase.FULL_MOON, R.drawable.moon_full, R.string.full_moon);
-        putAll(LunarPhase.INCREASING, R.drawable.moon_waxing, R.string.increasing);
-        putAll(LunarPhase.DECREASING, R.drawable.moon_waning, R.string.decreasing);
-        putAll(LunarPhase.NEW_MOON, R.drawable.moon_new, R.string.new_moon);
+        lunarPhases.put(LunarPhase.FULL_MOON, R.drawable.moon_full, R.string.full_moon);
+        lunarPhases.put(LunarPhase.INCREASING, R.drawable.moon_waxing, R.string.increasing);
+        lunarPhases.put(LunarPhase.DECREASING, R.drawable.moon_waning, R.string.decreasing);
+        lunarPhases.put(LunarPhase.NEW_MOON, R.drawable.moon_new, R.string.new_moon);
+        complete(lunarPhases);
 
         // Zodiac directions
-        putAll(ZodiacDirection.ASCENDING, R.drawable.moon_ascending, R.string.ascending);
-        putAll(ZodiacDirection.DESCENDING, R.drawable.moon_descending, R.string.descending);
+        zodiacDirections.put(ZodiacDirection.ASCENDING, R.drawable.moon_ascending, R.string.ascending);
+        zodiacDirections.put(ZodiacDirection.DESCENDING, R.drawable.moon_descending, R.string.descending);
+        complete(zodiacDirections);
 
         // Zodiac signs
-        putAll(ZodiacSign.AQUARIUS, R.drawable.aquarius, R.string.aquarius);
-        putAll(ZodiacSign.ARIES, R.drawable.aries, R.string.aries);
-        putAll(ZodiacSign.CANCER, R.drawable.cancer, R.string.cancer);
-        putAll(ZodiacSign.CAPRICORN, R.drawable.capricorn, R.string.capricorn);
-        putAll(ZodiacSign.GEMINI, R.drawable.gemini, R.string.gemini);
-        putAll(ZodiacSign.LEO, R.drawable.leo, R.string.leo);
-        putAll(ZodiacSign.LIBRA, R.drawable.libra, R.string.libra);
-        putAll(ZodiacSign.PISCES, R.drawable.pisces, R.string.pisces);
-        putAll(ZodiacSign.SAGITTARIUS, R.drawable.sagittarius, R.string.sagittarius);
-        putAll(ZodiacSign.SCORPIO, R.drawable.scorpio, R.string.scorpio);
-        putAll(ZodiacSign.TAURUS, R.drawable.taurus, R.string.taurus);
-        putAll(ZodiacSign.VIRGO, R.drawable.virgo, R.string.virgo);
+        zodiacSigns.put(ZodiacSign.AQUARIUS, R.drawable.aquarius, R.string.aquarius);
+        zodiacSigns.put(ZodiacSign.ARIES, R.drawable.aries, R.string.aries);
+        zodiacSigns.put(ZodiacSign.CANCER, R.drawable.cancer, R.string.cancer);
+        zodiacSigns.put(ZodiacSign.CAPRICORN, R.drawable.capricorn, R.string.capricorn);
+        zodiacSigns.put(ZodiacSign.GEMINI, R.drawable.gemini, R.string.gemini);
+        zodiacSigns.put(ZodiacSign.LEO, R.drawable.leo, R.string.leo);
+        zodiacSigns.put(ZodiacSign.LIBRA, R.drawable.libra, R.string.libra);
+        zodiacSigns.put(ZodiacSign.PISCES, R.drawable.pisces, R.string.pisces);
+        zodiacSigns.put(ZodiacSign.SAGITTARIUS, R.drawable.sagittarius, R.string.sagittarius);
+        zodiacSigns.put(ZodiacSign.SCORPIO, R.drawable.scorpio, R.string.scorpio);
+        zodiacSigns.put(ZodiacSign.TAURUS, R.drawable.taurus, R.string.taurus);
+        zodiacSigns.put(ZodiacSign.VIRGO, R.drawable.virgo, R.string.virgo);
+        complete(zodiacSigns);
 
         // Zodiac elements
-        putAll(ZodiacElement.AIR, R.drawable.air, R.string.air);
-        putAll(ZodiacElement.EARTH, R.drawable.earth, R.string.earth);
-        putAll(ZodiacElement.FIRE, R.drawable.fire, R.string.fire);
-        putAll(ZodiacElement.WATER, R.drawable.water, R.string.water);
+        zodiacElements.put(ZodiacElement.AIR, R.drawable.air, R.string.air);
+        zodiacElements.put(ZodiacElement.EARTH, R.drawable.earth, R.string.earth);
+        zodiacElements.put(ZodiacElement.FIRE, R.drawable.fire, R.string.fire);
+        zodiacElements.put(ZodiacElement.WATER, R.drawable.water, R.string.water);
+        complete(zodiacElements);
 
         // Interpretation qualities
-        putAll(Interpreter.Quality.WORST, R.drawable.quality_worst, R.string.interpretation_worst);
-        putAll(Interpreter.Quality.BAD, R.drawable.quality_bad, R.string.interpretation_bad);
-        putAll(Interpreter.Quality.GOOD, R.drawable.quality_good, R.string.interpretation_good);
-        putAll(Interpreter.Quality.BEST, R.drawable.quality_best, R.string.interpretation_best);
+        qualities.put(Interpreter.Quality.WORST, R.drawable.quality_worst, R.string.interpretation_worst);
+        qualities.put(Interpreter.Quality.BAD, R.drawable.quality_bad, R.string.interpretation_bad);
+        qualities.put(Interpreter.Quality.GOOD, R.drawable.quality_good, R.string.interpretation_good);
+        qualities.put(Interpreter.Quality.BEST, R.drawable.quality_best, R.string.interpretation_best);
+        // Neutral qualities aren't displayed
+        complete(qualities, Interpreter.Quality.NEUTRAL);
 
         // Interpreter annotations
 
         // Gardening
 
-        putString(Gardening.Plants.FLOWERS, R.string.interpret_gardening_plants_flowers);
-        putString(Gardening.Plants.FRUIT_PLANTS, R.string.interpret_gardening_plants_fruit);
-        putString(Gardening.Plants.LAWN, R.string.interpret_gardening_plants_lawn);
-        putString(Gardening.Plants.LEAFY_VEGETABLES, R.string.interpret_gardening_plants_leafy);
-        putString(Gardening.Plants.ROOT_VEGETABLES, R.string.interpret_gardening_plants_root);
-        putString(Gardening.Plants.POTATOES, R.string.interpret_gardening_plants_potatoes);
-        putString(Gardening.Plants.SALAD, R.string.interpret_gardening_plants_salad);
+        final EnumResourceTable<Gardening.Plants> plants =
+                new EnumResourceTable<>(Gardening.Plants.class);
+        plants.putString(Gardening.Plants.FLOWERS, R.string.interpret_gardening_plants_flowers);
+        plants.putString(Gardening.Plants.FRUIT_PLANTS, R.string.interpret_gardening_plants_fruit);
+        plants.putString(Gardening.Plants.LAWN, R.string.interpret_gardening_plants_lawn);
+        plants.putString(Gardening.Plants.LEAFY_VEGETABLES, R.string.interpret_gardening_plants_leafy);
+        plants.putString(Gardening.Plants.ROOT_VEGETABLES, R.string.interpret_gardening_plants_root);
+        plants.putString(Gardening.Plants.POTATOES, R.string.interpret_gardening_plants_potatoes);
+        plants.putString(Gardening.Plants.SALAD, R.string.interpret_gardening_plants_salad);
+        addAnnotations(plants);
 
-        putString(Gardening.HarvestInterpreter.Usage.TO_CONSERVE, R.string.interpret_gardening_harvest_conserve);
-        putString(Gardening.HarvestInterpreter.Usage.TO_DRY, R.string.interpret_gardening_harvest_dry);
-        putString(Gardening.HarvestInterpreter.Usage.CONSUME_IMMEDIATELY, R.string.interpret_gardening_harvest_consume);
+        final EnumResourceTable<Gardening.HarvestInterpreter.Usage> usages =
+                new EnumResourceTable<>(Gardening.HarvestInterpreter.Usage.class);
+        usages.putString(Gardening.HarvestInterpreter.Usage.TO_CONSERVE, R.string.interpret_gardening_harvest_conserve);
+        usages.putString(Gardening.HarvestInterpreter.Usage.TO_DRY, R.string.interpret_gardening_harvest_dry);
+        usages.putString(Gardening.HarvestInterpreter.Usage.CONSUME_IMMEDIATELY, R.string.interpret_gardening_harvest_consume);
+        addAnnotations(usages);
 
-        putString(Gardening.WeedControlInterpreter.Actions.DIG, R.string.interpret_gardening_dig);
-        putString(Gardening.WeedControlInterpreter.Actions.WEED, R.string.interpret_gardening_weed);
-        putString(Gardening.WeedControlInterpreter.Actions.WEED_BEFORE_NOON, R.string.interpret_gardening_weed_before_noon);
+        final EnumResourceTable<Gardening.WeedControlInterpreter.Actions> actions =
+                new EnumResourceTable<>(Gardening.WeedControlInterpreter.Actions.class);
+        actions.putString(Gardening.WeedControlInterpreter.Actions.DIG, R.string.interpret_gardening_dig);
+        actions.putString(Gardening.WeedControlInterpreter.Actions.WEED, R.string.interpret_gardening_weed);
+        actions.putString(Gardening.WeedControlInterpreter.Actions.WEED_BEFORE_NOON, R.string.interpret_gardening_weed_before_noon);
+        addAnnotations(actions);
 
-        putString(Gardening.TrimInterpreter.PlantCategory.FRUIT_TREES, R.string.interpret_gardening_trim_fruit);
-        putString(Gardening.TrimInterpreter.PlantCategory.SICK_PLANTS, R.string.interpret_gardening_trim_sick);
+        final EnumResourceTable<Gardening.TrimInterpreter.PlantCategory> plantCategories =
+                new EnumResourceTable<>(Gardening.TrimInterpreter.PlantCategory.class);
+        plantCategories.putString(Gardening.TrimInterpreter.PlantCategory.FRUIT_TREES, R.string.interpret_gardening_trim_fruit);
+        plantCategories.putString(Gardening.TrimInterpreter.PlantCategory.SICK_PLANTS, R.string.interpret_gardening_trim_sick);
+        addAnnotations(plantCategories);
 
-        putString(Gardening.CombatPestsInterpreter.PestType.OVERTERRESTRIAL, R.string.interpret_gardening_combatpests_over);
-        putString(Gardening.CombatPestsInterpreter.PestType.SUBTERRESTRIAL, R.string.interpret_gardening_combatpests_sub);
-        putString(Gardening.CombatPestsInterpreter.PestType.SLUGS, R.string.interpret_gardening_combatpests_slugs);
+        final EnumResourceTable<Gardening.CombatPestsInterpreter.PestType> pestTypes =
+                new EnumResourceTable<>(Gardening.CombatPestsInterpreter.PestType.class);
+        pestTypes.putString(Gardening.CombatPestsInterpreter.PestType.OVERTERRESTRIAL, R.string.interpret_gardening_combatpests_over);
+        pestTypes.putString(Gardening.CombatPestsInterpreter.PestType.SUBTERRESTRIAL, R.string.interpret_gardening_combatpests_sub);
+        pestTypes.putString(Gardening.CombatPestsInterpreter.PestType.SLUGS, R.string.interpret_gardening_combatpests_slugs);
+        addAnnotations(pestTypes);
     }
 
-    /**
-     * Returns the resource-ids belonging to an enum value.
-     *
-     * @param key the key
-     * @return an array where INDEX_STRING contains the string-id and INDEX_IMAGE the id of the icon
-     */
-    public static Integer[] getResourceIds(Enum<?> key) {
-        return getResourceIds(key.toString());
+    /** @return the string-id of the status text of a state or 0 if it isn't displayed */
+    public static int getStringId(ProgressListener.State state) {
+        return states.getStringId(state);
+    }
+
+    public static int getStringId(LunarPhase phase) {
+        return lunarPhases.getStringId(phase);
+    }
+
+    public static int getImageId(LunarPhase phase) {
+        return lunarPhases.getImageId(phase);
+    }
+
+    public static int getStringId(ZodiacDirection direction) {
+        return zodiacDirections.getStringId(direction);
+    }
+
+    public static int getImageId(ZodiacDirection direction) {
+        return zodiacDirections.getImageId(direction);
+    }
+
+    public static int getStringId(ZodiacSign sign) {
+        return zodiacSigns.getStringId(sign);
+    }
+
+    public static int getImageId(ZodiacSign sign) {
+        return zodiacSigns.getImageId(sign);
+    }
+
+    public static int getStringId(ZodiacElement element) {
+        return zodiacElements.getStringId(element);
+    }
+
+    public static int getImageId(ZodiacElement element) {
+        return zodiacElements.getImageId(element);
+    }
+
+    /** @return the string-id of a quality or 0 for {@link Interpreter.Quality#NEUTRAL} */
+    public static int getStringId(Interpreter.Quality quality) {
+        return qualities.getStringId(quality);
+    }
+
+    /** @return the image-id of a quality or 0 for {@link Interpreter.Quality#NEUTRAL} */
+    public static int getImageId(Interpreter.Quality quality) {
+        return qualities.getImageId(quality);
     }
 
     /**
-     * Returns the resource-ids belonging to an enum value.
-     *
-     * @param key the key
-     * @return an array where INDEX_STRING contains the string-id and INDEX_IMAGE the id of the icon
+     * Returns the string-id of an annotation of an interpreter.
+     * @param key an element of {@link Interpreter#getAnnotationsAsStringArray()}
+     * @throws IllegalArgumentException if the annotation isn't mapped
      */
-    public static Integer[] getResourceIds(String key) {
-        return mappings.get(key);
+    public static int getAnnotationStringId(String key) {
+
+        final Integer id = annotations.get(key);
+
+        if (id == null) {
+            throw new IllegalArgumentException("Unknown annotation: " + key);
+        }
+
+        return id;
     }
 
     /**
@@ -141,35 +245,123 @@ public class ResourceMapper {
      * Returns the formatted date string for a {@link LocalDate}
      */
     public static String formatDate(LocalDate date) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM)
-                .withLocale(DataManager.getLocale());
-        return date.format(formatter);
+        return getDateFormatters( DataManager.getLocale() ).medium.format(date);
     }
 
     /**
      * returns day of week and date
      */
     public static String formatLongDate(LocalDate date) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofLocalizedDate(FormatStyle.FULL)
-                .withLocale(DataManager.getLocale());
-        return date.format(formatter);
+        return getDateFormatters( DataManager.getLocale() ).full.format(date);
     }
 
     /**
-     * Returns the formatted time string of a {@link LocalDateTime}-object.
+     * Returns the formatted time string of an {@link Instant} in the given zone using the 12- or
+     * 24-hour format configured by the user.
      */
     public static String formatTime(Context context, ZoneId zoneId, Instant date) {
-        SimpleDateFormat sdf = (SimpleDateFormat) DateFormat.getTimeFormat(context);
-        DateTimeFormatter format = DateTimeFormatter.ofPattern(sdf.toPattern());
-        return format.format( date.atZone( zoneId) );
+        return getTimeFormatter( context, DataManager.getLocale(), zoneId ).formatter.format(date);
+    }
+
+    /**
+     * @return the date formatters for the locale - they're created again if it changed since the
+     * last call
+     */
+    static DateFormatters getDateFormatters(Locale locale) {
+
+        DateFormatters formatters = dateFormatters;
+
+        if (formatters == null || !formatters.locale.equals(locale)) {
+            formatters = new DateFormatters(locale);
+            dateFormatters = formatters;
+        }
+
+        return formatters;
+    }
+
+    /**
+     * @return the time formatter for the locale, zone and the current 12-/24-hour setting - it's
+     * created again if any of them changed since the last call
+     */
+    static TimeFormatter getTimeFormatter(Context context, Locale locale, ZoneId zoneId) {
+
+        return getTimeFormatter( locale, zoneId, DateFormat.is24HourFormat(context),
+                () -> ((SimpleDateFormat) DateFormat.getTimeFormat(context)).toPattern() );
+    }
+
+    /**
+     * @param pattern supplies the time pattern of the user's settings - only called if the
+     *                formatter needs to be created
+     * @see #getTimeFormatter(Context, Locale, ZoneId)
+     */
+    static TimeFormatter getTimeFormatter(Locale locale, ZoneId zoneId, boolean is24Hour,
+                                          Supplier<String> pattern) {
+
+        TimeFormatter formatter = timeFormatter;
+
+        if (formatter == null || !formatter.matches(locale, zoneId, is24Hour)) {
+            formatter = new TimeFormatter(pattern.get(), locale, zoneId, is24Hour);
+            timeFormatter = formatter;
+        }
+
+        return formatter;
+    }
+
+    /** Localized date formatters - immutable, so they can be shared by all threads */
+    static class DateFormatters {
+
+        final Locale locale;
+        final DateTimeFormatter medium;
+        final DateTimeFormatter full;
+
+        private DateFormatters(Locale locale) {
+            this.locale = locale;
+            this.medium = DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM).withLocale(locale);
+            this.full = DateTimeFormatter.ofLocalizedDate(FormatStyle.FULL).withLocale(locale);
+        }
+    }
+
+    /** A time formatter for a zone - immutable, so it can be shared by all threads */
+    static class TimeFormatter {
+
+        final Locale locale;
+        final ZoneId zoneId;
+        final boolean is24Hour;
+        final DateTimeFormatter formatter;
+
+        private TimeFormatter(String pattern, Locale locale, ZoneId zoneId, boolean is24Hour) {
+
+            this.locale = locale;
+            this.zoneId = zoneId;
+            this.is24Hour = is24Hour;
+
+            this.formatter = DateTimeFormatter.ofPattern(pattern, locale).withZone(zoneId);
+        }
+
+        boolean matches(Locale locale, ZoneId zoneId, boolean is24Hour) {
+            return this.is24Hour == is24Hour
+                    && this.locale.equals(locale)
+                    && this.zoneId.equals(zoneId);
+        }
+    }
+
+    /**
+     * @return the constants of libZodiac that have no resources and display
+     * {@link R.string#unknown} - should be empty, but missing resources don't crash the app
+     */
+    static List<Enum<?>> getMissingResources() {
+        return Collections.unmodifiableList(missingResources);
     }
 
-    private static void putString(Enum<?> key, int stringId) {
-        putAll(key, -1, stringId);
+    /** Maps constants without resources to a fallback string */
+    @SafeVarargs
+    private static <E extends Enum<E>> void complete(EnumResourceTable<E> table, E... unmapped) {
+        missingResources.addAll( table.complete(R.string.unknown, unmapped) );
     }
 
-    private static void putAll(Enum<?> key, int drawableId, int stringId) {
-        mappings.put(key.toString(),
-                new Integer[]{drawableId, stringId});
+    /** Makes the annotations of an interpreter available by name */
+    private static <E extends Enum<E>> void addAnnotations(EnumResourceTable<E> table) {
+        complete(table);
+        table.putStringIdsByName(annotations);
     }
 }
@@ -0,0 +1,213 @@
+package de.kah2.mondtag.datamanagement;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+import de.kah2.zodiac.libZodiac4A.Calendar;
+import de.kah2.zodiac.libZodiac4A.DateRange;
+import de.kah2.zodiac.libZodiac4A.Day;
+import de.kah2.zodiac.libZodiac4A.DayStorableDataSet;
+
+/**
+ * <p>Asynchronous access to stored days. All operations of {@link DayStore} are run one after
+ * another on a dedicated I/O thread, so they are executed in the order they were requested - e.g.
+ * an import requested after activating a profile always sees the days of that profile.</p>
+ * <p>Results are delivered to optional {@link ResultCallback}s on the main thread. Background
+ * threads may instead wait for the returned {@link Future}s using {@link #await(Future)}.</p>
+ */
+class AsyncDataAccess {
+
+    private final static String TAG = AsyncDataAccess.class.getSimpleName();
+
+    private final static String THREAD_NAME = "mondtag-db-io";
+
+    private final DayStore store;
+
+    private final ExecutorService ioExecutor;
+
+    private final Handler mainHandler;
+
+    AsyncDataAccess(DayStore store) {
+
+        this.store = store;
+
+        this.ioExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(() -> {
+                android.os.Process.setThreadPriority(
+                        android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Marks a profile as used and delivers the number of profiles evicted to stay within budget.
+     * @see DayStore#activateProfile(LocationProfile, DateRange)
+     */
+    Future<Integer> activateProfile(LocationProfile profile, DateRange window,
+                                    @Nullable ResultCallback<Integer> callback) {
+        return this.submit(() -> this.store.activateProfile(profile, window), callback);
+    }
+
+    /** Loads all saved profiles, most recently used first. */
+    Future<List<LocationProfile>> loadProfiles(
+            @Nullable ResultCallback<List<LocationProfile>> callback) {
+        return this.submit(this.store::loadProfiles, callback);
+    }
+
+    /** Loads the stored days of a profile within a {@link DateRange}. */
+    Future<List<DayStorableDataSet>> importDays(LocationProfile profile, DateRange range,
+                                                @Nullable ResultCallback<List<DayStorableDataSet>> callback) {
+        return this.submit(() -> this.store.load(profile, range), callback);
+    }
+
+    /**
+     * Loads the stored days of a profile within a {@link DateRange} into a new {@link Calendar}, so
+     * they can be used like generated days. Missing days aren't generated.
+     * @return the valid days sorted by date
+     */
+    Future<List<Day>> loadDays(LocationProfile profile, DateRange range,
+                               @Nullable ResultCallback<List<Day>> callback) {
+
+        return this.submit(() -> {
+
+            final Calendar calendar = new Calendar(range, Calendar.Scope.CYCLE, profile);
+            calendar.importDays( this.store.load(profile, range) );
+
+            return Collections.unmodifiableList( new ArrayList<>(calendar.getValidDays()) );
+
+        }, callback);
+    }
+
+    /** Loads the stored interpretations of a profile within a {@link DateRange}. */
+    Future<List<StoredInterpretation>> importInterpretations(LocationProfile profile,
+            DateRange range, @Nullable ResultCallback<List<StoredInterpretation>> callback) {
+        return this.submit(() -> this.store.loadInterpretations(profile, range), callback);
+    }
+
+    /**
+     * Writes the given days calculated for a profile and delivers the number of written entries.
+     * The entries must be snapshots - live days might still be modified by the generating thread.
+     * @param precondition checked on the I/O thread right before writing - if it's false, nothing
+     *                     is written. This allows to drop days that got stale while the write was
+     *                     queued.
+     */
+    Future<Integer> write(LocationProfile profile, List<DatabaseDayEntry> entries,
+                          @Nullable BooleanSupplier precondition,
+                          @Nullable ResultCallback<Integer> callback) {
+
+        return this.submit(() -> {
+
+            if (precondition != null && !precondition.getAsBoolean()) {
+                Log.d(TAG, "write: precondition failed - dropping " + entries.size() + " days");
+                return 0;
+            }
+
+            return this.store.write(profile, entries);
+
+        }, callback);
+    }
+
+    /**
+     * Stores the interpretations of all given days that weren't interpreted before and delivers
+     * the number of interpreted days.
+     * @param precondition see {@link #write(LocationProfile, List, BooleanSupplier, ResultCallback)}
+     * @see DayStore#writeMissingInterpretations(LocationProfile, List)
+     */
+    Future<Integer> writeMissingInterpretations(LocationProfile profile, List<Day> days,
+                                                @Nullable BooleanSupplier precondition,
+                                                @Nullable ResultCallback<Integer> callback) {
+
+        return this.submit(() -> {
+
+            if (precondition != null && !precondition.getAsBoolean()) {
+                Log.d(TAG, "writeMissingInterpretations: precondition failed - dropping "
+                        + days.size() + " days");
+                return 0;
+            }
+
+            return this.store.writeMissingInterpretations(profile, days);
+
+        }, callback);
+    }
+
+    /**
+     * Closes the database connection after all pending operations are done. It gets reopened by
+     * the next operation.
+     */
+    void close() {
+        this.ioExecutor.execute(this.store::close);
+    }
+
+    private <T> Future<T> submit(Callable<T> task, @Nullable ResultCallback<T> callback) {
+
+        return this.ioExecutor.submit(() -> {
+
+            final T result;
+
+            try {
+                result = task.call();
+            } catch (Exception e) {
+                Log.e(TAG, "Database operation failed", e);
+                throw e;
+            }
+
+            if (callback != null) {
+                this.mainHandler.post(() -> callback.onResult(result));
+            }
+
+            return result;
+        });
+    }
+
+    /**
+     * Waits for a database operation - <strong>must not be called on the main thread!</strong>
+     * @return the result or null if the operation failed or the thread got interrupted
+     */
+    @Nullable
+    static <T> T await(Future<T> future) {
+
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            throw new IllegalStateException("Waiting for database on main thread");
+        }
+
+        try {
+
+            return future.get();
+
+        } catch (ExecutionException e) {
+
+            // Already logged by #submit
+            Log.d(TAG, "await: database operation failed");
+
+        } catch (InterruptedException e) {
+
+            Log.w(TAG, "await: interrupted while waiting for database");
+            Thread.currentThread().interrupt();
+        }
+
+        return null;
+    }
+
+    /** Receives the result of a database operation on the main thread. */
+    interface ResultCallback<T> {
+        void onResult(T result);
+    }
+}
@@ -0,0 +1,179 @@
+package de.kah2.mondtag.datamanagement;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.kah2.mondtag.R;
+import de.kah2.mondtag.calendar.MappedInterpreter;
+
+/**
+ * <p>An immutable snapshot of Mondtag's configuration: the {@link LocationProfile} used for
+ * rise- and set-calculation, the selected interpreter and the interpreters compared in the
+ * calendar.</p>
+ * <p>{@link DataManager} only rebuilds it when preferences change, so reading the configuration
+ * doesn't need to parse any preferences.</p>
+ */
+public class Configuration {
+
+    private final static String TAG = Configuration.class.getSimpleName();
+
+    private final LocationProfile profile;
+
+    private final MappedInterpreter interpreter;
+
+    private final List<MappedInterpreter> comparedInterpreters;
+
+    private final boolean fromDefaults;
+
+    private Configuration(LocationProfile profile, @Nullable MappedInterpreter interpreter,
+                          List<MappedInterpreter> comparedInterpreters, boolean fromDefaults) {
+        this.profile = profile;
+        this.interpreter = interpreter;
+        this.comparedInterpreters =
+                Collections.unmodifiableList( new ArrayList<>(comparedInterpreters) );
+        this.fromDefaults = fromDefaults;
+    }
+
+    /**
+     * Reads position and time zone from preferences. Missing or invalid values are replaced by
+     * defaults, which are saved, so the user can review them.
+     * <p>Saving the defaults notifies preference listeners, which load the configuration again.
+     * That reload reads the saved defaults as valid values, so it keeps the flag of the previous
+     * snapshot as long as the profile didn't change.</p>
+     * @param previous the snapshot to replace or null if there is none - its interpreters are kept,
+     *                 since they aren't stored in preferences
+     */
+    static Configuration load(Context context, SharedPreferences preferences,
+                              @Nullable Configuration previous) {
+
+        boolean fromDefaults = false;
+
+        final SharedPreferences.Editor editor = preferences.edit();
+
+        final String prefKeyLocation = context.getString(R.string.pref_key_location);
+
+        NamedGeoPosition position;
+
+        try {
+
+            position = NamedGeoPosition.from( preferences.getString(prefKeyLocation, null) );
+
+        } catch (Exception e) {
+
+            Log.i( TAG, "load: couldn't parse position, using default. " + e.getMessage() );
+            position = DataManager.DEFAULT_LOCATION_MUNICH;
+            editor.putString( prefKeyLocation, position.toString() );
+            fromDefaults = true;
+        }
+
+        final String prefKeyTz = context.getString(R.string.pref_key_timezone);
+
+        // We don't need to validate much, because the user can't type any time zone
+        ZoneId zone;
+
+        try {
+
+            zone = ZoneId.of( preferences.getString(prefKeyTz, null) );
+
+        } catch (NullPointerException | DateTimeException e) {
+
+            zone = ZoneId.systemDefault();
+            Log.d( TAG, "load: setting default timezone: " + zone);
+            editor.putString(prefKeyTz, zone.getId());
+            fromDefaults = true;
+        }
+
+        if (fromDefaults) {
+            editor.apply();
+        }
+
+        final LocationProfile profile = new LocationProfile(position, zone);
+
+        if (previous == null) {
+            return new Configuration( profile, null, Collections.emptyList(), fromDefaults );
+        }
+
+        if ( previous.isFromDefaults() && previous.profile.equals(profile) ) {
+            fromDefaults = true;
+        }
+
+        return new Configuration( profile, previous.interpreter, previous.comparedInterpreters,
+                fromDefaults );
+    }
+
+    /** @return a copy of this configuration using another interpreter */
+    Configuration withInterpreter(@Nullable MappedInterpreter interpreter) {
+        return new Configuration(this.profile, interpreter, this.comparedInterpreters,
+                this.fromDefaults);
+    }
+
+    /** @return a copy of this configuration comparing other interpreters */
+    Configuration withComparedInterpreters(List<MappedInterpreter> comparedInterpreters) {
+        return new Configuration(this.profile, this.interpreter, comparedInterpreters,
+                this.fromDefaults);
+    }
+
+    public LocationProfile getProfile() {
+        return this.profile;
+    }
+
+    /** @return the observer position - <strong>must not be modified</strong> */
+    public NamedGeoPosition getPosition() {
+        return this.profile.getPosition();
+    }
+
+    public ZoneId getZone() {
+        return this.profile.getZone();
+    }
+
+    /** @return the selected interpreter or null if none is selected */
+    @Nullable
+    public MappedInterpreter getInterpreter() {
+        return this.interpreter;
+    }
+
+    /** @return the interpreters compared in the calendar - empty if comparison is off */
+    public List<MappedInterpreter> getComparedInterpreters() {
+        return this.comparedInterpreters;
+    }
+
+    /**
+     * @return the resource id of the selected interpreter's name or R.string.interpret_none if none
+     * is selected.
+     */
+    public int getInterpreterNameId() {
+
+        if (this.interpreter == null) {
+            return R.string.interpret_none;
+        } else {
+            return this.interpreter.getId();
+        }
+    }
+
+    /** @return true if position or time zone weren't configured and defaults were used */
+    public boolean isFromDefaults() {
+        return this.fromDefaults;
+    }
+
+    /**
+     * @return true if the other configuration leads to the same rise and set times - the name of
+     * the position and the interpreter don't matter
+     */
+    public boolean hasSameProfile(@Nullable Configuration other) {
+        return other != null && this.profile.equals(other.profile);
+    }
+
+    @Override
+    public String toString() {
+        return this.profile + (this.fromDefaults ? " (defaults)" : "");
+    }
+}
@@ -1,167 +1,204 @@
 package de.kah2.mondtag.datamanagement;
 
-import android.content.ContentValues;
-import android.content.Context;
-import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
-import android.text.TextUtils;
 import android.util.Log;
 
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
-import de.kah2.mondtag.Mondtag;
 import de.kah2.zodiac.libZodiac4A.Calendar;
+import de.kah2.zodiac.libZodiac4A.DateRange;
 import de.kah2.zodiac.libZodiac4A.Day;
 import de.kah2.zodiac.libZodiac4A.DayStorableDataSet;
 import de.kah2.zodiac.libZodiac4A.ProgressListener;
 
 /**
  * This class contains logic to import and calculate needed data.
+ * Database operations are done through {@link AsyncDataAccess}.
  */
-class DataFetcher implements ProgressListener{
+class DataFetcher {
 
     private final static String TAG = DataFetcher.class.getSimpleName();
 
-    private final Context context;
+    private final AsyncDataAccess dataAccess;
 
-    private final DatabaseHelper databaseHelper;
+    private final ParallelDayGenerator parallelGenerator;
 
-    private Instant startTime = null;
-
-    DataFetcher(Context context) {
-        this.context = context;
-        this.databaseHelper = new DatabaseHelper(context);
-    }
+    private final InterpretationImportListener interpretationListener;
 
     /**
-     * Loads existing data and removes days outside expected range
+     * Persists days of the running job - there's only one at a time. Null until the first job
+     * starts generating. Calendar listeners may be called before that, e.g. while days are imported.
      */
-    void importData(Calendar calendar) {
-        final List<DayStorableDataSet> loadedData = this.loadData();
+    private volatile WriteBehindQueue writeQueue = null;
 
-        calendar.importDays(loadedData);
-        Log.d(TAG, "Imported " + loadedData.size() + " days");
+    private Instant startTime = null;
+
+    DataFetcher(AsyncDataAccess dataAccess, ParallelDayGenerator parallelGenerator,
+                InterpretationImportListener interpretationListener) {
 
-        final List<Day> daysDeleted = calendar.removeOverhead(false);
-        this.deleteFromDb(daysDeleted);
+        this.dataAccess = dataAccess;
+        this.parallelGenerator = parallelGenerator;
+        this.interpretationListener = interpretationListener;
     }
 
     /**
-     * Starts calculation of days missing withing expected range
+     * Loads existing data within the given range and removes days outside expected range from
+     * memory. Stored interpretations of the range are passed to the
+     * {@link InterpretationImportListener}. Stored days are kept, so they can be loaded again when the user scrolls back.
+     * Blocks until the data is loaded, so this must be called by a background thread.
+     * @param range the range to load - usually the expected range of the calendar or the part of it
+     *              that wasn't imported yet
+     * @throws java.util.concurrent.CancellationException if the job got stale
      */
-    void startGeneratingMissingDays(Calendar calendar) {
+    void importData(GenerationJob job, DateRange range) {
 
-        this.startTime = Clock.systemUTC().instant();
+        final Calendar calendar = job.getCalendar();
 
-        calendar.startGeneration();
-    }
+        final List<DayStorableDataSet> loadedData =
+                AsyncDataAccess.await( this.dataAccess.importDays(job.getProfile(), range, null) );
 
-    /**
-     * Deletes a {@link List} of {@link Day}s from database.
-     */
-    private void deleteFromDb(List<Day> days) {
+        job.throwIfStale();
 
-        if ( days == null || days.size() == 0 ) {
+        if (loadedData == null) {
 
-            Log.d(TAG, "deleteFromDb: No unwanted past days to delete");
-            
-        } else {
+            Log.e(TAG, "importData: couldn't load data - missing days will be generated");
 
-            final SQLiteDatabase db = databaseHelper.getWritableDatabase();
+        } else {
 
-            final String dates = this.joinDates(days);
-            Log.d(TAG, "Deleting " + days.size() + " unused days from database: " + dates );
+            calendar.importDays(loadedData);
+            Log.d(TAG, "Imported " + loadedData.size() + " days");
 
-            final String selection = DatabaseDayEntry.COLUMN_NAME_DATE + " IN (" + dates + ")";
+            this.importInterpretations(job, range);
+        }
 
-            // Using param whereArgs doesn't work
-            final int deleted = db.delete(DatabaseDayEntry.TABLE_NAME, selection, null);
+        final List<Day> daysRemoved = calendar.removeOverhead(false);
 
-            Log.d(TAG, "Deleted " + deleted + " entries");
-            db.close();
+        if ( daysRemoved != null && !daysRemoved.isEmpty() ) {
+            Log.d(TAG, "importData: removed " + daysRemoved.size() + " days outside range");
         }
     }
 
     /**
-     * Transforms a {@link List} of {@link Day}s into a comma-separated list in order to insert them
-     * into a database command.
+     * Copies the days of the calendar extended by the job, so only the added days need to be
+     * loaded or generated. Interpretations of these days are cached already.
+     * @param days the published days of the extended calendar
      */
-    private String joinDates(List<Day> days) {
-        LinkedList<String> dates = new LinkedList<>();
-        for (Day day: days) {
-            dates.add("'" + day.getDate().toString() + "'");
+    void importExtendedDays(GenerationJob job, List<Day> days) {
+
+        final List<DayStorableDataSet> data = new ArrayList<>(days.size());
+
+        for (Day day : days) {
+            data.add( new DatabaseDayEntry(day) );
+        }
+
+        job.getCalendar().importDays(data);
+
+        Log.d(TAG, "importExtendedDays: copied " + data.size() + " days");
+    }
+
+    /** Loads the stored interpretations of a range - missing ones get calculated when displayed. */
+    private void importInterpretations(GenerationJob job, DateRange range) {
+
+        final List<StoredInterpretation> interpretations = AsyncDataAccess.await(
+                this.dataAccess.importInterpretations(job.getProfile(), range, null) );
+
+        job.throwIfStale();
+
+        if (interpretations == null) {
+
+            Log.e(TAG, "importInterpretations: couldn't load interpretations");
+
+        } else if ( !interpretations.isEmpty() ) {
+
+            this.interpretationListener.onInterpretationsImported(
+                    job.getProfile(), interpretations);
         }
-        return TextUtils.join(",", dates);
     }
 
     /**
-     * Loads all available data from database.
+     * Starts calculation of days missing withing expected range. Larger ranges are calculated by
+     * {@link ParallelDayGenerator} first, so the calendar only has to calculate what's left.
+     * Generated days are persisted in checkpoints while generation runs.
      */
-    private List<DayStorableDataSet> loadData() {
-
-        final SQLiteDatabase db = this.databaseHelper.getReadableDatabase();
-        Cursor cursor = db.query(
-                DatabaseDayEntry.TABLE_NAME,
-                null,
-                null,
-                null,
-                null,
-                null,
-                DatabaseDayEntry.COLUMN_NAME_DATE + " ASC"
-        );
-
-        final List<DayStorableDataSet> result = new LinkedList<>();
-
-        cursor.moveToFirst();
-
-        while ( !cursor.isAfterLast() ) {
-            DatabaseDayEntry entry = new DatabaseDayEntry(cursor);
-            // FIXME Better way than orThrow?
-            long id = cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseDayEntry._ID));
-            Log.d(TAG, "Read entry with ID " + id + ": " + entry.getDate());
-            result.add(entry);
-            cursor.moveToNext();
-        }
+    void startGeneratingMissingDays(GenerationJob job) {
+
+        this.startTime = Clock.systemUTC().instant();
+
+        this.writeQueue = new WriteBehindQueue(this.dataAccess, job);
 
-        cursor.close();
-        db.close();
+        this.parallelGenerator.generateMissingDays(job, this.writeQueue);
 
-        return result;
+        job.getCalendar().startGeneration();
     }
 
-    @Override
-    public void onStateChanged(State state) {
+    /**
+     * Called for state changes of the calendar belonging to a current job - persists the remaining
+     * newly generated days when generation is finished. Afterwards all days are complete, so
+     * interpretations missing in database get stored, too.
+     */
+    void onStateChanged(GenerationJob job, ProgressListener.State state) {
 
         Log.d(TAG, "onStateChanged: " + state);
 
-        if (state == State.FINISHED) {
+        if (state == ProgressListener.State.FINISHED) {
 
-            SQLiteDatabase db = this.databaseHelper.getWritableDatabase();
+            final WriteBehindQueue queue = this.getWriteQueue(job);
 
-            final LinkedList<Day> generatedDays =
-                    ((Mondtag) this.context).getDataManager().getCalendar().getNewlyGenerated();
+            if (queue != null) {
 
-            for (Day day : generatedDays) {
-                ContentValues values = new DatabaseDayEntry(day).toContentValues();
-                long id = db.insert(DatabaseDayEntry.TABLE_NAME, null, values);
-                Log.d(TAG, "Wrote day " + day.getDate() + " --> ID: " + id);
-            }
-            db.close();
+                queue.offer( job.getCalendar().getNewlyGenerated() );
+                queue.flush();
+
+                Instant endTime = Clock.systemUTC().instant();
 
-            Instant endTime = Clock.systemUTC().instant();
+                Log.i( TAG, "Calculation finished in: "
+                        + Duration.between(this.startTime, endTime) );
+            }
 
-            Log.i( TAG, "Calculation finished in: "
-                    + Duration.between(this.startTime, endTime) );
+            this.dataAccess.writeMissingInterpretations(job.getProfile(),
+                    new ArrayList<>( job.getCalendar().getValidDays() ), job::isCurrent, null);
         }
     }
 
-    @Override
-    public void onCalculationProgress(float percent) {
+    /**
+     * Called for progress of the calendar belonging to a current job - queues days generated so far
+     * to write a checkpoint when enough days are available.
+     */
+    void onCalculationProgress(GenerationJob job, float percent) {
         Log.d(TAG, "Calculation progress is: " + percent);
+
+        final WriteBehindQueue queue = this.getWriteQueue(job);
+
+        if (queue != null) {
+            queue.offerNewlyGenerated( job.getCalendar().getNewlyGenerated() );
+        }
+    }
+
+    /** @return the queue of the given job or null if it didn't start generating yet */
+    private WriteBehindQueue getWriteQueue(GenerationJob job) {
+
+        final WriteBehindQueue queue = this.writeQueue;
+
+        if (queue == null || !queue.belongsTo(job)) {
+            Log.d(TAG, "getWriteQueue: job " + job.getToken() + " isn't generating");
+            return null;
+        }
+
+        return queue;
+    }
+
+    /** Receives interpretations loaded from database along with the days of a calendar. */
+    interface InterpretationImportListener {
+
+        /**
+         * Called by the generation thread.
+         * @param profile the profile the interpretations belong to
+         */
+        void onInterpretationsImported(LocationProfile profile,
+                                       List<StoredInterpretation> interpretations);
     }
 }
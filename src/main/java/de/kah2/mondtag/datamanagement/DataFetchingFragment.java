@@ -80,6 +80,15 @@ public class DataFetchingFragment extends Fragment
         return view;
     }
 
+    /** Prevents a fragment that isn't shown anymore from being informed about progress */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+
+        ((Mondtag) getActivity().getApplicationContext()).getDataManager()
+                .getDataFetchingMessenger().removeDisplayer(this);
+    }
+
     @Override
     public void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
@@ -109,7 +118,7 @@ public class DataFetchingFragment extends Fragment
              */
                 this.actionTextView.setText(
                         mondtagActivity.getString(
-                                ResourceMapper.getResourceIds(state)[ResourceMapper.INDEX_STRING]));
+                                ResourceMapper.getStringId(state)));
             }
         }
     }
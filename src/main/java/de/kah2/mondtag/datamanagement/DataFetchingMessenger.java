@@ -31,6 +31,13 @@ public class DataFetchingMessenger implements ProgressListener {
         this.displayer = displayer;
     }
 
+    /** Removes the displayer, if it wasn't replaced by another one meanwhile. */
+    public void removeDisplayer(ProgressListener displayer) {
+        if (this.displayer == displayer) {
+            this.displayer = null;
+        }
+    }
+
     /**
      * Creates a {@link Handler} for managing progress information of data generation.
      */
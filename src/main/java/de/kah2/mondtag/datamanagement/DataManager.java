@@ -1,21 +1,38 @@
 package de.kah2.mondtag.datamanagement;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
 import android.preference.PreferenceManager;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import de.kah2.zodiac.libZodiac4A.Calendar;
 import de.kah2.zodiac.libZodiac4A.DateRange;
+import de.kah2.zodiac.libZodiac4A.Day;
 import de.kah2.zodiac.libZodiac4A.LocationProvider;
+import de.kah2.zodiac.libZodiac4A.ProgressListener;
 import de.kah2.zodiac.libZodiac4A.planetary.Position;
 import de.kah2.mondtag.Mondtag;
 import de.kah2.mondtag.R;
+import de.kah2.mondtag.calendar.DayFilter;
+import de.kah2.mondtag.calendar.InterpreterManager;
 import de.kah2.mondtag.calendar.MappedInterpreter;
 
 /**
@@ -33,24 +50,62 @@ public class DataManager implements LocationProvider {
 
     private final static int DAYS_TO_CALCULATE_AHEAD = 7;
 
+    /** Number of days added by a background extension */
+    private final static int PREFETCH_CHUNK_DAYS = 14;
+
+    /** Number of days the calendar may contain before it gets trimmed to the visible ones */
+    private final static int WINDOW_DAYS = 180;
+
     public final static NamedGeoPosition DEFAULT_LOCATION_MUNICH =
             new NamedGeoPosition("Munich Germany",48.137,11.57521);
 
-    private final static String DEFAULT_TZ = ZoneId.systemDefault().toString();
+    private final static String GENERATION_THREAD_NAME = "mondtag-generation";
 
     private final Context context;
 
+    private final AsyncDataAccess dataAccess;
+
     private final DataFetcher fetcher;
     private final DataFetchingMessenger messenger;
-    private boolean isDataFetcherWorking = false;
+
+    private final ExecutorService generationExecutor;
+
+    /** Advanced for every new calendar - see {@link GenerationJob} */
+    private final AtomicLong generationToken = new AtomicLong();
 
     private boolean userShouldReviewConfig = false;
 
-    private boolean importedExistingData = false;
+    /** Immutable snapshot - rebuilt when preferences change */
+    private volatile Configuration config;
+
+    /**
+     * The configuration when the current configuration transaction began - null if there is none
+     * @see #beginConfigTransaction()
+     */
+    private Configuration configBeforeTransaction = null;
+
+    /** Preferences only keep a weak reference to their listeners */
+    private final SharedPreferences.OnSharedPreferenceChangeListener preferenceListener =
+            this::onPreferenceChanged;
+
+    /** Contains the current calendar, which might still be generated */
+    private volatile GenerationJob job;
+
+    /**
+     * Contains the calendar to display: the last one that was complete. While a new calendar is
+     * generated after a configuration change, it's the previous one. Its calendar isn't modified
+     * anymore - the UI only reads its published days.
+     * @see #isCalendarStale()
+     * @see GenerationJob#publishDays()
+     */
+    private volatile GenerationJob displayedJob = null;
+
+    private CalendarChangeListener changeListener = null;
 
-    private MappedInterpreter selectedInterpreter;
+    /** The filter applied to the displayed days - it isn't part of the configuration */
+    private volatile DayFilter dayFilter = DayFilter.NONE;
 
-    private Calendar calendar;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     /**
      * Should only be called by {@link Mondtag}!
@@ -59,156 +114,441 @@ public class DataManager implements LocationProvider {
 
         this.context = context;
 
-        this.fetcher = new DataFetcher(context);
+        this.dataAccess = new AsyncDataAccess(
+                new DayStore( new DatabaseConnection(context) ) );
         this.messenger = new DataFetchingMessenger();
+        this.fetcher = new DataFetcher(this.dataAccess,
+                new ParallelDayGenerator(this.messenger),
+                (profile, interpretations) -> InterpreterManager.importInterpretations(
+                        interpretations, profile, this.context) );
 
-        this.calendar = this.createEmptyCalender();
-    }
+        this.generationExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, GENERATION_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
 
-    private Calendar createEmptyCalender() {
+        final SharedPreferences preferences =
+                PreferenceManager.getDefaultSharedPreferences(this.context);
+        preferences.registerOnSharedPreferenceChangeListener(this.preferenceListener);
 
-        final LocalDate startDate = LocalDate.now();
+        this.reloadConfiguration();
 
-        final DateRange range = new DateRange( startDate,
-                startDate.plusDays(DAYS_TO_CALCULATE_AHEAD) );
+        this.job = this.createCalendar( createInitialRange(), true, null );
+    }
 
-        final Calendar calendar = new Calendar( range, Calendar.Scope.CYCLE, this );
+    private static DateRange createInitialRange() {
 
-        calendar.addProgressListener(this.fetcher);
-        calendar.addProgressListener(this.messenger);
+        final LocalDate startDate = LocalDate.now();
 
-        return calendar;
+        return new DateRange( startDate, startDate.plusDays(DAYS_TO_CALCULATE_AHEAD) );
     }
 
     /**
-     * Loads the configured observer position needed for rise- and set-calculation or sets the
-     * default if <strong>an invalid position</strong> was saved.
+     * Creates a new empty calendar and its {@link GenerationJob}.
+     * @param range the expected range of the new calendar
+     * @param newConfiguration true if the calendar replaces one of a previous configuration, which
+     *                         makes all jobs of previous calendars stale - false if it only covers
+     *                         another range of the current calendar
+     * @param extendedJob the job of the displayed calendar, if the new one extends it - null
+     *                    otherwise
      */
+    private GenerationJob createCalendar(DateRange range, boolean newConfiguration,
+                                         @Nullable GenerationJob extendedJob) {
+
+        final LocationProfile profile = newConfiguration ?
+                this.config.getProfile() : this.job.getProfile();
+
+        final Calendar calendar = new Calendar( range, Calendar.Scope.CYCLE, profile );
+
+        final long token = newConfiguration ?
+                this.generationToken.incrementAndGet() : this.generationToken.get();
+
+        final GenerationJob job = new GenerationJob( calendar, profile, token, this.generationToken,
+                extendedJob );
+
+        calendar.addProgressListener( new CalendarListener(job) );
+
+        // Runs before any import of the new calendar, since database access is sequential. Stored
+        // days of the profile get trimmed to the budget - those of the new range are kept.
+        this.dataAccess.activateProfile(profile, range, null);
+
+        return job;
+    }
+
+    /** @return the position of the current {@link Configuration} */
     @Override
     public Position getObserverPosition() {
-        final SharedPreferences prefs = PreferenceManager
-                .getDefaultSharedPreferences(this.context);
+        return this.config.getPosition();
+    }
 
-        final String prefKey = this.context.getString(R.string.pref_key_location);
+    /** @return the time zone of the current {@link Configuration} */
+    @Override
+    public ZoneId getTimeZoneId() {
+        return this.config.getZone();
+    }
 
-        final String positionString = prefs.getString(prefKey, null);
+    /** @return the current configuration snapshot */
+    public Configuration getConfiguration() {
+        return this.config;
+    }
 
-        NamedGeoPosition position;
+    /**
+     * Rebuilds the configuration snapshot from preferences - the selected and compared
+     * interpreters are kept.
+     * @return the new snapshot
+     */
+    private synchronized Configuration reloadConfiguration() {
 
-        try {
+        final Configuration config = Configuration.load( this.context,
+                PreferenceManager.getDefaultSharedPreferences(this.context), this.config );
 
-            position = NamedGeoPosition.from(positionString);
+        if (config.isFromDefaults()) {
+            this.userShouldReviewConfig = true;
+        }
+
+        Log.d(TAG, "reloadConfiguration: " + config);
 
-        } catch (Exception e) {
+        this.config = config;
+        return config;
+    }
 
-            Log.i( TAG, "getPosition: couldn't parse position, using default. "
-                        + e.getMessage() );
-            position = DEFAULT_LOCATION_MUNICH;
+    private void onPreferenceChanged(SharedPreferences preferences, String key) {
 
-            SharedPreferences.Editor editor = prefs.edit();
-            editor.putString( prefKey, position.toString() );
-            editor.apply();
+        if ( this.context.getString(R.string.pref_key_location).equals(key)
+                || this.context.getString(R.string.pref_key_timezone).equals(key) ) {
 
-            this.userShouldReviewConfig = true;
+            this.reloadConfiguration();
         }
+    }
 
-        return position;
+    /**
+     * Creates a calendar extending the displayed one by {@link #DAYS_TO_CALCULATE_AHEAD} days -
+     * generation needs to be started afterwards. Does nothing while the displayed calendar isn't
+     * the current one, e.g. while an extension is running - its progress can be displayed instead.
+     */
+    public void extendExpectedRange() {
+
+        if ( !this.extend(false, DAYS_TO_CALCULATE_AHEAD) ) {
+            Log.d(TAG, "extendExpectedRange: calendar is already being replaced - not extending");
+        }
     }
 
     /**
-     * <p>Loads the configured timezone needed for rise- and set-calculation.</p>
-     * <p>We don't need to set a default, because the user can't type any time zone.</p>
+     * Extends the displayed calendar by {@link #PREFETCH_CHUNK_DAYS} days in background, while
+     * it stays displayed. When the new days are available,
+     * {@link CalendarChangeListener#onCalendarExtended()} is called.
+     * @return false if the calendar can't be extended right now - e.g. because it's stale,
+     * incomplete or a job is already running
      */
-    @Override
-    public ZoneId getTimeZoneId() {
+    public boolean prefetchFuture() {
+        return this.prefetch(false);
+    }
+
+    /**
+     * Like {@link #prefetchFuture()}, but adds the days before the start of the displayed calendar.
+     */
+    public boolean prefetchPast() {
+        return this.prefetch(true);
+    }
 
-        final SharedPreferences preferences = PreferenceManager
-                .getDefaultSharedPreferences(context);
+    private boolean prefetch(boolean past) {
 
-        final String prefKeyTz = context.getString(R.string.pref_key_timezone);
+        if ( !this.extend(past, PREFETCH_CHUNK_DAYS) ) {
+            return false;
+        }
 
-        String timezone = preferences.getString(prefKeyTz, null);
+        Log.d(TAG, "prefetch: extending calendar by " + PREFETCH_CHUNK_DAYS + " days"
+                + (past ? " to the past" : ""));
 
-        if (timezone == null) {
+        this.startCalendarGenerationIfNotAlreadyWorking();
 
-            Log.d( TAG, "Setting default timezone: " + DEFAULT_TZ);
+        return true;
+    }
 
-            SharedPreferences.Editor editor = preferences.edit();
-            editor.putString(prefKeyTz, DEFAULT_TZ);
-            editor.apply();
+    /**
+     * Creates a calendar covering the displayed one and the given number of days before or after
+     * it. The displayed calendar isn't modified: the new one starts with a copy of its days and
+     * replaces it when complete.
+     * @return false if the displayed calendar isn't complete or isn't the current one
+     */
+    private boolean extend(boolean past, int days) {
 
-            userShouldReviewConfig = true;
+        final GenerationJob displayed = this.displayedJob;
 
-            timezone = DEFAULT_TZ;
+        if (displayed == null || displayed.getDays() == null) {
+            return false;
         }
 
-        return ZoneId.of(timezone);
+        final DateRange range = displayed.getCalendar().getRangeExpected();
+
+        final DateRange newRange = past ?
+                new DateRange( range.getStart().minusDays(days), range.getEnd() ) :
+                new DateRange( range.getStart(), range.getEnd().plusDays(days) );
+
+        synchronized (this) {
+
+            if (this.job != displayed) {
+                return false;
+            }
+
+            this.job = this.createCalendar(newRange, false, displayed);
+        }
+
+        return true;
     }
 
-    public void extendExpectedRange() {
+    /**
+     * Replaces the displayed calendar by one only containing the given dates and some days around
+     * them, if it contains more than {@link #WINDOW_DAYS} days. This keeps the number of days in
+     * memory bounded while the user scrolls through the calendar. Should be called when scrolling
+     * stopped.
+     * @param firstVisible the first date the user sees
+     * @param lastVisible the last date the user sees
+     * @return true if a trimmed calendar gets created
+     */
+    public boolean trimWindowIfNeeded(LocalDate firstVisible, LocalDate lastVisible) {
 
-        final DateRange newRange = new DateRange(
-                calendar.getRangeExpected().getStart(),
-                calendar.getAllDays().getLast().getDate().plusDays(DAYS_TO_CALCULATE_AHEAD) );
+        final DateRange expected = this.job.getCalendar().getRangeExpected();
+
+        if ( ChronoUnit.DAYS.between(expected.getStart(), expected.getEnd()) < WINDOW_DAYS ) {
+            return false;
+        }
 
-        calendar.setRangeExpected(newRange);
+        return this.moveWindow(firstVisible, lastVisible);
+    }
+
+    /**
+     * <p>Creates a calendar of the current configuration containing the given dates and a margin of
+     * a quarter of {@link #WINDOW_DAYS} around them. Its days are loaded from database or
+     * generated in background.</p>
+     * <p>The displayed calendar is kept until the new one is complete, then
+     * {@link CalendarChangeListener#onCalendarSwapped()} is called.</p>
+     * @return false if the calendar can't be moved right now, because it's stale or a job is
+     * running
+     */
+    public boolean moveWindow(LocalDate first, LocalDate last) {
+
+        final GenerationJob job = this.job;
+
+        // Days of a running job would get lost
+        if ( this.isCalendarStale() || job.isRunning() ) {
+            return false;
+        }
+
+        final int margin = WINDOW_DAYS / 4;
+
+        final DateRange range = new DateRange( first.minusDays(margin), last.plusDays(margin) );
+
+        Log.d(TAG, "moveWindow: creating calendar for " + range.getStart()
+                + " - " + range.getEnd());
+
+        synchronized (this) {
+
+            if (this.job != job) {
+                return false;
+            }
+
+            this.job = this.createCalendar(range, false, null);
+        }
+
+        this.startCalendarGenerationIfNotAlreadyWorking();
+
+        return true;
+    }
+
+    /** @return true while a calendar extending the displayed one is generated */
+    public boolean isPrefetching() {
+        final GenerationJob displayed = this.displayedJob;
+        return displayed != null && this.job.getExtendedJob() == displayed;
     }
 
     /**
      * Starts calendar generation using a separate thread to not block the
-     * UI - or does nothing if a thread was already started.
+     * UI - or does nothing if the job of the current calendar is already running or complete.
+     * Jobs of previous calendars don't block this, they are cancelled and the new job starts as
+     * soon as they stopped.
      */
-     void startCalendarGenerationIfNotAlreadyWorking() {
+    public void startCalendarGenerationIfNotAlreadyWorking() {
 
-         if (isDataFetcherWorking) {
+         final GenerationJob job = this.job;
 
-             Log.d(TAG, "startCalendarGenerationIfNotAlreadyWorking: already working - NOT starting new thread");
+         // Complete calendars must not be modified anymore
+         if ( job.getDays() != null ) {
 
-         } else {
+             Log.d(TAG, "startCalendarGenerationIfNotAlreadyWorking: calendar is complete");
+             this.messenger.onStateChanged(ProgressListener.State.FINISHED);
+
+         } else if ( !job.tryStart() ) {
 
-             final Runnable worker = this.createLibZodiacWorker();
-             final Thread workerThread = new Thread(worker);
+             Log.d(TAG, "startCalendarGenerationIfNotAlreadyWorking: already working - NOT starting new job");
 
-             workerThread.start();
+         } else {
+
+             this.generationExecutor.execute( () -> this.runGenerationJob(job) );
          }
     }
 
     /**
-     * Creates a {@link Runnable} containing logic for importing and generating data.
+     * Contains logic for importing and generating data.
+     */
+    private void runGenerationJob(GenerationJob job) {
+
+        // Moves the current Thread into the background
+        android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+
+        try {
+
+            job.throwIfStale();
+
+            this.importMissingRange(job);
+
+            this.fetcher.startGeneratingMissingDays(job);
+
+        } catch (CancellationException e) {
+
+            Log.d(TAG, "runGenerationJob: cancelled job " + job.getToken());
+
+        } finally {
+
+            job.finish();
+        }
+    }
+
+    /**
+     * Loads stored days of the expected range that weren't imported before. After the first import
+     * only days added before or after the imported range get loaded. A calendar extending another
+     * one starts with a copy of its days.
      */
-    private Runnable createLibZodiacWorker() {
+    private void importMissingRange(GenerationJob job) {
 
-        return () -> {
+        final DateRange expected = job.getCalendar().getRangeExpected();
+        DateRange imported = job.getImportedRange();
 
-            DataManager.this.isDataFetcherWorking = true;
+        final GenerationJob extended = job.getExtendedJob();
 
-            // Moves the current Thread into the background
-            android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+        if (imported == null && extended != null) {
+            this.fetcher.importExtendedDays(job, extended.getDays());
+            imported = extended.getCalendar().getRangeExpected();
+        }
+
+        if (imported == null) {
 
-            if ( ! this.importedExistingData ) {
+            this.fetcher.importData(job, expected);
+
+        } else {
 
-                this.fetcher.importData(this.calendar);
-                this.importedExistingData = true;
+            if ( expected.getStart().isBefore(imported.getStart()) ) {
+                this.fetcher.importData(job,
+                        new DateRange(expected.getStart(), imported.getStart().minusDays(1)));
             }
 
-            this.fetcher.startGeneratingMissingDays(this.calendar);
+            if ( expected.getEnd().isAfter(imported.getEnd()) ) {
+                this.fetcher.importData(job,
+                        new DateRange(imported.getEnd().plusDays(1), expected.getEnd()));
+            }
+        }
 
-            DataManager.this.isDataFetcherWorking = false;
-        };
+        job.throwIfStale();
+        job.setImportedRange(expected);
     }
 
     /**
-     * To use on configuration changes to trigger recalculation of data
+     * To use on configuration changes to switch to the {@link LocationProfile} of the new
+     * configuration. A generation job still working on the old calendar gets cancelled and the new
+     * calendar is generated in background. Stored days of the previous profile are kept, so
+     * switching back doesn't need any calculation.
      */
     public void resetCalendar() {
 
         Log.d(TAG, "resetCalendar");
 
-        this.calendar = this.createEmptyCalender();
+        // Preference listeners are called in no particular order, so the snapshot might not be
+        // updated yet
+        this.reloadConfiguration();
 
-        try ( DatabaseHelper dbHelper = new DatabaseHelper( this.context ) ) {
-            dbHelper.resetDatabase(dbHelper.getWritableDatabase());
+        synchronized (this) {
+            this.job = this.createCalendar( createInitialRange(), true, null );
         }
+
+        this.startCalendarGenerationIfNotAlreadyWorking();
+    }
+
+    /**
+     * <p>Starts collecting configuration changes - e.g. when settings are opened. Changed
+     * preferences don't affect the calendar until {@link #commitConfigTransaction()} is called, so
+     * changing location and time zone one after another only causes one recalculation.</p>
+     * <p>Does nothing if a transaction is already open, e.g. when the settings are recreated.</p>
+     */
+    public synchronized void beginConfigTransaction() {
+
+        if (this.configBeforeTransaction == null) {
+
+            this.configBeforeTransaction = this.reloadConfiguration();
+            Log.d(TAG, "beginConfigTransaction: " + this.configBeforeTransaction);
+        }
+    }
+
+    /**
+     * Applies all changes collected since {@link #beginConfigTransaction()}: The calendar is only
+     * reset if the changes lead to another {@link LocationProfile}.
+     * @return true if the calendar was reset
+     */
+    public synchronized boolean commitConfigTransaction() {
+
+        final Configuration before = this.configBeforeTransaction;
+        this.configBeforeTransaction = null;
+
+        if (before == null) {
+            Log.w(TAG, "commitConfigTransaction: no transaction open");
+            return false;
+        }
+
+        if ( this.reloadConfiguration().hasSameProfile(before) ) {
+
+            Log.d(TAG, "commitConfigTransaction: profile unchanged - keeping calendar");
+            return false;
+        }
+
+        this.resetCalendar();
+        return true;
+    }
+
+    /**
+     * Loads all saved location profiles, most recently used first.
+     * @param callback receives the profiles on the main thread
+     */
+    public void loadProfiles(Consumer<List<LocationProfile>> callback) {
+        this.dataAccess.loadProfiles(callback::accept);
+    }
+
+    /**
+     * Loads the stored days of the displayed calendar's profile within a range - e.g. to search
+     * days that aren't displayed. Days that were never generated are missing.
+     * @param callback receives the immutable days sorted by date on the main thread - they were
+     *                 calculated for {@link #getCalendarProfile()}
+     */
+    public void loadStoredDays(DateRange range, Consumer<List<Day>> callback) {
+        this.dataAccess.loadDays(this.getDisplayedJob().getProfile(), range, callback::accept);
+    }
+
+    /**
+     * Called by {@link Mondtag#onTrimMemory(int)}: Closes the database connection when the app is
+     * in background. Pending operations are finished first and the connection gets reopened when
+     * needed.
+     */
+    public void onTrimMemory(int level) {
+
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+
+            Log.d(TAG, "onTrimMemory: closing database - level: " + level);
+            this.dataAccess.close();
+        }
+    }
+
+    /** Called by {@link Mondtag#onTerminate()} to release the database connection. */
+    public void onTerminate() {
+        this.dataAccess.close();
     }
 
     /** Tells if config was loaded from defaults */
@@ -222,15 +562,133 @@ public class DataManager implements LocationProvider {
     }
 
     /**
-     * @return the calendar or null if none is present
+     * @return the days to display sorted by date - while a new calendar is generated, these are the
+     * days of the previous complete one. The list is immutable and can be read by any thread. It's
+     * empty if no calendar is complete yet.
+     * @see #isCalendarStale()
+     */
+    public List<Day> getDisplayedDays() {
+        final List<Day> days = this.getDisplayedJob().getDays();
+        return days == null ? Collections.emptyList() : days;
+    }
+
+    /** @return the displayed day of the given date or null if it isn't displayed */
+    @Nullable
+    public Day getDisplayedDay(LocalDate date) {
+
+        final List<Day> days = this.getDisplayedDays();
+
+        int low = 0;
+        int high = days.size() - 1;
+
+        while (low <= high) {
+
+            final int middle = (low + high) >>> 1;
+            final int comparison = days.get(middle).getDate().compareTo(date);
+
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return days.get(middle);
+            }
+        }
+
+        return null;
+    }
+
+    /** @return true if a complete calendar can be displayed */
+    public boolean isCalendarComplete() {
+        return this.getDisplayedJob().getDays() != null;
+    }
+
+    /** @return the profile the days returned by {@link #getDisplayedDays()} were calculated for */
+    public LocationProfile getCalendarProfile() {
+        return this.getDisplayedJob().getProfile();
+    }
+
+    /** @return the time zone the days returned by {@link #getDisplayedDays()} were calculated for */
+    public ZoneId getCalendarTimeZoneId() {
+        return this.getCalendarProfile().getZone();
+    }
+
+    /**
+     * @return true if {@link #getDisplayedDays()} returns the days of a previous configuration or
+     * range, because the current calendar isn't complete yet - extensions of the displayed
+     * calendar don't make it stale
+     */
+    public boolean isCalendarStale() {
+        final GenerationJob displayed = this.displayedJob;
+        final GenerationJob job = this.job;
+        return displayed != null && displayed != job && job.getExtendedJob() != displayed;
+    }
+
+    /**
+     * @return true if {@link #getDisplayedDays()} returns the days of a previous configuration,
+     * because the calendar of the current one isn't complete yet - a calendar only covering another
+     * range of the current configuration doesn't count
      */
-    public Calendar getCalendar() {
-        return calendar;
+    public boolean isConfigurationChanging() {
+        final GenerationJob displayed = this.displayedJob;
+        return displayed != null && displayed.getToken() != this.job.getToken();
+    }
+
+    private GenerationJob getDisplayedJob() {
+        final GenerationJob displayed = this.displayedJob;
+        return displayed == null ? this.job : displayed;
+    }
+
+    /**
+     * Publishes the days of the finished calendar and swaps the displayed calendar as soon as the
+     * current one is complete. If it extends the displayed calendar, listeners are informed about
+     * the new days. Called by the generation thread.
+     */
+    private void onJobFinished(GenerationJob finishedJob) {
+
+        if ( !finishedJob.getCalendar().isComplete() ) {
+            return;
+        }
+
+        finishedJob.publishDays();
+
+        final GenerationJob displayed = this.displayedJob;
+
+        if (displayed == finishedJob) {
+            return;
+        }
+
+        final boolean isExtension = displayed != null && finishedJob.getExtendedJob() == displayed;
+
+        Log.d(TAG, "onJobFinished: swapping in calendar of job " + finishedJob.getToken()
+                + (isExtension ? " - extends the displayed one" : ""));
+        this.displayedJob = finishedJob;
+
+        this.mainHandler.post( () -> {
+
+            if (this.changeListener == null || this.displayedJob != finishedJob) {
+                return;
+            }
+
+            if (isExtension) {
+                this.changeListener.onCalendarExtended();
+            } else {
+                this.changeListener.onCalendarSwapped();
+            }
+        });
+    }
+
+    /**
+     * Sets the listener informed on the main thread when the displayed calendar changes.
+     * @param listener the listener or null to remove it
+     */
+    public void setCalendarChangeListener(@Nullable CalendarChangeListener listener) {
+        this.changeListener = listener;
     }
 
     /** @return the selected interpreter or null if none is selected */
     public MappedInterpreter getSelectedInterpreter() {
-        return selectedInterpreter;
+        return this.config.getInterpreter();
     }
 
     /**
@@ -238,16 +696,31 @@ public class DataManager implements LocationProvider {
      * is selected.
      */
     public int getSelectedInterpreterNameId() {
+        return this.config.getInterpreterNameId();
+    }
 
-        if (getSelectedInterpreter() == null) {
-            return R.string.interpret_none;
-        } else {
-            return getSelectedInterpreter().getId();
-        }
+    public synchronized void setSelectedInterpreter(MappedInterpreter interpreter) {
+        this.config = this.config.withInterpreter(interpreter);
     }
 
-    public void setSelectedInterpreter(MappedInterpreter interpreter) {
-        this.selectedInterpreter = interpreter;
+    /** @return the interpreters compared in the calendar - empty if comparison is off */
+    public List<MappedInterpreter> getComparedInterpreters() {
+        return this.config.getComparedInterpreters();
+    }
+
+    /** @param interpreters the interpreters to compare or an empty list to turn comparison off */
+    public synchronized void setComparedInterpreters(List<MappedInterpreter> interpreters) {
+        this.config = this.config.withComparedInterpreters(interpreters);
+    }
+
+    /** @return the filter applied to the displayed days - {@link DayFilter#NONE} if there's none */
+    public DayFilter getDayFilter() {
+        return this.dayFilter;
+    }
+
+    /** @param filter the filter to apply or {@link DayFilter#NONE} to show all days */
+    public void setDayFilter(DayFilter filter) {
+        this.dayFilter = filter;
     }
 
     public DataFetchingMessenger getDataFetchingMessenger() {
@@ -258,4 +731,58 @@ public class DataManager implements LocationProvider {
     public static Locale getLocale() {
         return Locale.getDefault();
     }
+
+    /**
+     * Forwards the progress of a calendar to {@link DataFetcher} and {@link DataFetchingMessenger}
+     * as long as its job is current. Progress updates are used as cancellation points: If the job
+     * got stale, generation is aborted by throwing a {@link CancellationException}.
+     */
+    private class CalendarListener implements ProgressListener {
+
+        private final GenerationJob job;
+
+        private CalendarListener(GenerationJob job) {
+            this.job = job;
+        }
+
+        @Override
+        public void onStateChanged(State state) {
+
+            if ( !this.job.isCurrent() ) {
+                Log.d(TAG, "onStateChanged: ignoring " + state + " of stale job "
+                        + this.job.getToken());
+                return;
+            }
+
+            DataManager.this.fetcher.onStateChanged(this.job, state);
+
+            if (state == State.FINISHED) {
+                DataManager.this.onJobFinished(this.job);
+            }
+
+            DataManager.this.messenger.onStateChanged(state);
+        }
+
+        @Override
+        public void onCalculationProgress(float percent) {
+
+            this.job.throwIfStale();
+
+            DataManager.this.fetcher.onCalculationProgress(this.job, percent);
+            DataManager.this.messenger.onCalculationProgress(percent);
+        }
+    }
+
+    /** Informs the UI about changes of the days returned by {@link #getDisplayedDays()}. */
+    public interface CalendarChangeListener {
+
+        /** {@link #getDisplayedDays()} returns the days of a new calendar */
+        void onCalendarSwapped();
+
+        /**
+         * {@link #getDisplayedDays()} returns the days of a calendar, which added days to the start
+         * or end of the previously displayed one
+         */
+        void onCalendarExtended();
+    }
 }
@@ -0,0 +1,55 @@
+package de.kah2.mondtag.datamanagement;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+/**
+ * <p>Holds the single connection to Mondtag's database that is shared by all components of the
+ * data layer. The connection is opened when it's needed the first time and stays open until
+ * {@link #close()} is called - e.g. when the system asks to trim memory.</p>
+ * <p>Write-ahead logging is enabled, so reads can run while the background worker writes.</p>
+ */
+class DatabaseConnection {
+
+    private final static String TAG = DatabaseConnection.class.getSimpleName();
+
+    private final DatabaseHelper helper;
+
+    private SQLiteDatabase database;
+
+    DatabaseConnection(Context context) {
+        this.helper = new DatabaseHelper(context.getApplicationContext());
+    }
+
+    /** Connects to another database than Mondtag's - meant for tests. */
+    DatabaseConnection(Context context, String databaseName) {
+        this.helper = new DatabaseHelper(context.getApplicationContext(), databaseName);
+    }
+
+    /**
+     * @return the open database - opens it if needed. <strong>Must not be closed by the caller!
+     * </strong>
+     */
+    synchronized SQLiteDatabase get() {
+
+        if (this.database == null || !this.database.isOpen()) {
+
+            Log.d(TAG, "get: opening database");
+            this.database = this.helper.getWritableDatabase();
+        }
+
+        return this.database;
+    }
+
+    /** Closes the connection - the next call of {@link #get()} reopens it. */
+    synchronized void close() {
+
+        if (this.database != null) {
+
+            Log.d(TAG, "close: closing database");
+            this.helper.close();
+            this.database = null;
+        }
+    }
+}
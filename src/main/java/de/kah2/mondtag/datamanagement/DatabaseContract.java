@@ -2,6 +2,12 @@ package de.kah2.mondtag.datamanagement;
 
 /**
  * Defines the database schema.
+ * <p>Dates are stored as epoch days and instants as epoch seconds to avoid parsing strings on
+ * import. Days are stored per {@link LocationProfile} - see {@link DatabaseProfileEntry}. The
+ * results of all interpreters are stored per profile and date - see
+ * {@link DatabaseInterpretationEntry}.</p>
+ * <p>Version 1 stored the days of a single location as ISO-8601 text - see
+ * {@link #SQL_MIGRATE_V1_COPY}.</p>
  *
  * Created by kahles on 30.09.16.
  */
@@ -11,22 +17,220 @@ class DatabaseContract {
     private final static String TEXT_TYPE = "TEXT";
     private final static String INT_TYPE = "INTEGER";
     private final static String FLOAT_TYPE = "REAL";
+    private final static String NOT_NULL = " NOT NULL";
     private final static String COMMA_SEP = ",";
 
-    final static String SQL_CREATE_TABLES = "CREATE TABLE " + DatabaseDayEntry.TABLE_NAME + " (" +
+    private final static String DAY_INDEX_NAME = DatabaseDayEntry.TABLE_NAME + "_" +
+            DatabaseDayEntry.COLUMN_NAME_PROFILE + "_" + DatabaseDayEntry.COLUMN_NAME_DATE + "_INDEX";
+
+    private final static String PROFILE_INDEX_NAME =
+            DatabaseProfileEntry.TABLE_NAME + "_" + DatabaseProfileEntry.COLUMN_NAME_KEY + "_INDEX";
+
+    private final static String INTERPRETATION_INDEX_NAME =
+            DatabaseInterpretationEntry.TABLE_NAME + "_" +
+            DatabaseInterpretationEntry.COLUMN_NAME_PROFILE + "_" +
+            DatabaseInterpretationEntry.COLUMN_NAME_DATE + "_" +
+            DatabaseInterpretationEntry.COLUMN_NAME_INTERPRETER + "_INDEX";
+
+    private final static String SQL_CREATE_DAY_TABLE =
+            "CREATE TABLE " + DatabaseDayEntry.TABLE_NAME + " (" +
             DatabaseDayEntry._ID + " " + INT_TYPE + " PRIMARY KEY" + COMMA_SEP +
-            DatabaseDayEntry.COLUMN_NAME_DATE + " " + TEXT_TYPE + COMMA_SEP +
-            DatabaseDayEntry.COLUMN_NAME_SUN_RISE + " " + TEXT_TYPE + COMMA_SEP +
-            DatabaseDayEntry.COLUMN_NAME_SUN_SET + " " + TEXT_TYPE + COMMA_SEP +
-            DatabaseDayEntry.COLUMN_NAME_LUNAR_RISE + " " + TEXT_TYPE + COMMA_SEP +
-            DatabaseDayEntry.COLUMN_NAME_LUNAR_SET + " " + TEXT_TYPE + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_PROFILE + " " + INT_TYPE + NOT_NULL + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_DATE + " " + INT_TYPE + NOT_NULL + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_SUN_RISE + " " + INT_TYPE + NOT_NULL + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_SUN_SET + " " + INT_TYPE + NOT_NULL + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_LUNAR_RISE + " " + INT_TYPE + NOT_NULL + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_LUNAR_SET + " " + INT_TYPE + NOT_NULL + COMMA_SEP +
             DatabaseDayEntry.COLUMN_NAME_LUNAR_VISIBILITY + " " + FLOAT_TYPE + COMMA_SEP +
             DatabaseDayEntry.COLUMN_NAME_LUNAR_LONGITUDE + " " + FLOAT_TYPE +
             ");";
 
-    static final String SQL_DELETE_TABLES = "DROP TABLE IF EXISTS " + DatabaseDayEntry.TABLE_NAME;
+    private final static String SQL_CREATE_DAY_INDEX = "CREATE UNIQUE INDEX " + DAY_INDEX_NAME +
+            " ON " + DatabaseDayEntry.TABLE_NAME + " (" +
+            DatabaseDayEntry.COLUMN_NAME_PROFILE + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_DATE + ");";
+
+    private final static String SQL_CREATE_PROFILE_TABLE =
+            "CREATE TABLE " + DatabaseProfileEntry.TABLE_NAME + " (" +
+            DatabaseProfileEntry._ID + " " + INT_TYPE + " PRIMARY KEY" + COMMA_SEP +
+            DatabaseProfileEntry.COLUMN_NAME_KEY + " " + TEXT_TYPE + NOT_NULL + COMMA_SEP +
+            DatabaseProfileEntry.COLUMN_NAME_NAME + " " + TEXT_TYPE + COMMA_SEP +
+            DatabaseProfileEntry.COLUMN_NAME_LATITUDE + " " + FLOAT_TYPE + NOT_NULL + COMMA_SEP +
+            DatabaseProfileEntry.COLUMN_NAME_LONGITUDE + " " + FLOAT_TYPE + NOT_NULL + COMMA_SEP +
+            DatabaseProfileEntry.COLUMN_NAME_ZONE + " " + TEXT_TYPE + NOT_NULL + COMMA_SEP +
+            DatabaseProfileEntry.COLUMN_NAME_LAST_USED + " " + INT_TYPE + NOT_NULL +
+            ");";
+
+    private final static String SQL_CREATE_PROFILE_INDEX = "CREATE UNIQUE INDEX " +
+            PROFILE_INDEX_NAME +
+            " ON " + DatabaseProfileEntry.TABLE_NAME +
+            " (" + DatabaseProfileEntry.COLUMN_NAME_KEY + ");";
+
+    private final static String SQL_CREATE_INTERPRETATION_TABLE =
+            "CREATE TABLE " + DatabaseInterpretationEntry.TABLE_NAME + " (" +
+            DatabaseInterpretationEntry._ID + " " + INT_TYPE + " PRIMARY KEY" + COMMA_SEP +
+            DatabaseInterpretationEntry.COLUMN_NAME_PROFILE + " " + INT_TYPE + NOT_NULL + COMMA_SEP +
+            DatabaseInterpretationEntry.COLUMN_NAME_DATE + " " + INT_TYPE + NOT_NULL + COMMA_SEP +
+            DatabaseInterpretationEntry.COLUMN_NAME_INTERPRETER + " " + TEXT_TYPE + NOT_NULL + COMMA_SEP +
+            DatabaseInterpretationEntry.COLUMN_NAME_QUALITY + " " + INT_TYPE + NOT_NULL + COMMA_SEP +
+            DatabaseInterpretationEntry.COLUMN_NAME_ANNOTATIONS + " " + TEXT_TYPE + NOT_NULL +
+            ");";
+
+    private final static String SQL_CREATE_INTERPRETATION_INDEX = "CREATE UNIQUE INDEX " +
+            INTERPRETATION_INDEX_NAME +
+            " ON " + DatabaseInterpretationEntry.TABLE_NAME + " (" +
+            DatabaseInterpretationEntry.COLUMN_NAME_PROFILE + COMMA_SEP +
+            DatabaseInterpretationEntry.COLUMN_NAME_DATE + COMMA_SEP +
+            DatabaseInterpretationEntry.COLUMN_NAME_INTERPRETER + ");";
+
+    /** Statements to create the current schema */
+    final static String[] SQL_CREATE_TABLES = {
+            SQL_CREATE_DAY_TABLE,
+            SQL_CREATE_DAY_INDEX,
+            SQL_CREATE_PROFILE_TABLE,
+            SQL_CREATE_PROFILE_INDEX,
+            SQL_CREATE_INTERPRETATION_TABLE,
+            SQL_CREATE_INTERPRETATION_INDEX
+    };
+
+    /** Name of the table of version 1 during the migration */
+    private final static String V1_TABLE_NAME = DatabaseDayEntry.TABLE_NAME + "_V1";
+
+    /** Statements to drop all tables - including the one left by a failed migration */
+    static final String[] SQL_DELETE_TABLES = {
+            "DROP TABLE IF EXISTS " + DatabaseDayEntry.TABLE_NAME,
+            "DROP TABLE IF EXISTS " + DatabaseProfileEntry.TABLE_NAME,
+            "DROP TABLE IF EXISTS " + DatabaseInterpretationEntry.TABLE_NAME,
+            "DROP TABLE IF EXISTS " + V1_TABLE_NAME
+    };
+
+    /**
+     * Statement to insert a day - placeholders are bound in this order by
+     * {@link DatabaseDayEntry#bindTo(android.database.sqlite.SQLiteStatement, long)}.
+     * An existing entry for the same profile and date gets replaced.
+     */
+    static final String SQL_INSERT_DAY = "INSERT OR REPLACE INTO " +
+            DatabaseDayEntry.TABLE_NAME + " (" +
+            DatabaseDayEntry.COLUMN_NAME_PROFILE + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_DATE + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_SUN_RISE + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_SUN_SET + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_LUNAR_RISE + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_LUNAR_SET + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_LUNAR_VISIBILITY + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_LUNAR_LONGITUDE +
+            ") VALUES (?,?,?,?,?,?,?,?);";
+
+    /**
+     * Statement to insert the result of an interpreter - placeholders are bound in this order by
+     * {@link DatabaseInterpretationEntry#bindTo(android.database.sqlite.SQLiteStatement, long,
+     * java.time.LocalDate, String, de.kah2.zodiac.libZodiac4A.interpretation.Interpreter)}.
+     * An existing entry for the same profile, date and interpreter gets replaced.
+     */
+    static final String SQL_INSERT_INTERPRETATION = "INSERT OR REPLACE INTO " +
+            DatabaseInterpretationEntry.TABLE_NAME + " (" +
+            DatabaseInterpretationEntry.COLUMN_NAME_PROFILE + COMMA_SEP +
+            DatabaseInterpretationEntry.COLUMN_NAME_DATE + COMMA_SEP +
+            DatabaseInterpretationEntry.COLUMN_NAME_INTERPRETER + COMMA_SEP +
+            DatabaseInterpretationEntry.COLUMN_NAME_QUALITY + COMMA_SEP +
+            DatabaseInterpretationEntry.COLUMN_NAME_ANNOTATIONS +
+            ") VALUES (?,?,?,?,?);";
+
+    /**
+     * Selects the stored interpretations of a profile within a date range.
+     * Arguments: profile id, first epoch day, last epoch day.
+     */
+    static final String SQL_SELECT_INTERPRETATIONS = "SELECT " +
+            DatabaseInterpretationEntry.COLUMN_NAME_DATE + COMMA_SEP +
+            DatabaseInterpretationEntry.COLUMN_NAME_INTERPRETER + COMMA_SEP +
+            DatabaseInterpretationEntry.COLUMN_NAME_QUALITY + COMMA_SEP +
+            DatabaseInterpretationEntry.COLUMN_NAME_ANNOTATIONS +
+            " FROM " + DatabaseInterpretationEntry.TABLE_NAME +
+            " WHERE " + DatabaseInterpretationEntry.COLUMN_NAME_PROFILE + " = ?" +
+            " AND " + DatabaseInterpretationEntry.COLUMN_NAME_DATE + " BETWEEN ? AND ?";
+
+    /**
+     * Selects the dates of a profile within a date range having at least one stored
+     * interpretation. Arguments: profile id, first epoch day, last epoch day.
+     */
+    static final String SQL_SELECT_INTERPRETED_DATES = "SELECT DISTINCT " +
+            DatabaseInterpretationEntry.COLUMN_NAME_DATE +
+            " FROM " + DatabaseInterpretationEntry.TABLE_NAME +
+            " WHERE " + DatabaseInterpretationEntry.COLUMN_NAME_PROFILE + " = ?" +
+            " AND " + DatabaseInterpretationEntry.COLUMN_NAME_DATE + " BETWEEN ? AND ?";
+
+    /**
+     * Selects the days of a profile within a date range.
+     * Arguments: profile id, first epoch day, last epoch day.
+     */
+    static final String SQL_SELECT_DAYS = "SELECT *" +
+            " FROM " + DatabaseDayEntry.TABLE_NAME +
+            " WHERE " + DatabaseDayEntry.COLUMN_NAME_PROFILE + " = ?" +
+            " AND " + DatabaseDayEntry.COLUMN_NAME_DATE + " BETWEEN ? AND ?" +
+            " ORDER BY " + DatabaseDayEntry.COLUMN_NAME_DATE + " ASC";
+
+    static final String COLUMN_NAME_DAY_COUNT = "DAY_COUNT";
+
+    /**
+     * Selects all profiles with the number of stored days, most recently used first.
+     * The count is available as {@link #COLUMN_NAME_DAY_COUNT}.
+     */
+    static final String SQL_SELECT_PROFILE_USAGE = "SELECT p.*" + COMMA_SEP +
+            " (SELECT COUNT(*) FROM " + DatabaseDayEntry.TABLE_NAME + " r" +
+            " WHERE r." + DatabaseDayEntry.COLUMN_NAME_PROFILE + " = p." + DatabaseProfileEntry._ID +
+            ") AS " + DatabaseContract.COLUMN_NAME_DAY_COUNT +
+            " FROM " + DatabaseProfileEntry.TABLE_NAME + " p" +
+            " ORDER BY p." + DatabaseProfileEntry.COLUMN_NAME_LAST_USED + " DESC";
+
+    // Migration from version 1, where dates and instants of one location were stored as
+    // ISO-8601 text in a table named like the current day table
+
+    /** Moves the table of version 1 aside, so the current schema can be created */
+    static final String SQL_MIGRATE_V1_RENAME = "ALTER TABLE " + DatabaseDayEntry.TABLE_NAME +
+            " RENAME TO " + V1_TABLE_NAME;
+
+    /**
+     * Assigns the days of version 1 to a profile - argument: the id of the profile. Text values are
+     * converted using SQLite's date functions. Rows that can't be converted are skipped and will
+     * simply be generated again.
+     */
+    static final String SQL_MIGRATE_V1_COPY = "INSERT OR REPLACE INTO " +
+            DatabaseDayEntry.TABLE_NAME + " (" +
+            DatabaseDayEntry.COLUMN_NAME_PROFILE + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_DATE + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_SUN_RISE + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_SUN_SET + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_LUNAR_RISE + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_LUNAR_SET + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_LUNAR_VISIBILITY + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_LUNAR_LONGITUDE +
+            ") SELECT ?" + COMMA_SEP +
+            toEpochDay(DatabaseDayEntry.COLUMN_NAME_DATE) + COMMA_SEP +
+            toEpochSecond(DatabaseDayEntry.COLUMN_NAME_SUN_RISE) + COMMA_SEP +
+            toEpochSecond(DatabaseDayEntry.COLUMN_NAME_SUN_SET) + COMMA_SEP +
+            toEpochSecond(DatabaseDayEntry.COLUMN_NAME_LUNAR_RISE) + COMMA_SEP +
+            toEpochSecond(DatabaseDayEntry.COLUMN_NAME_LUNAR_SET) + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_LUNAR_VISIBILITY + COMMA_SEP +
+            DatabaseDayEntry.COLUMN_NAME_LUNAR_LONGITUDE +
+            " FROM " + V1_TABLE_NAME +
+            " WHERE " + toEpochDay(DatabaseDayEntry.COLUMN_NAME_DATE) + " IS NOT NULL" +
+            " AND " + toEpochSecond(DatabaseDayEntry.COLUMN_NAME_SUN_RISE) + " IS NOT NULL" +
+            " AND " + toEpochSecond(DatabaseDayEntry.COLUMN_NAME_SUN_SET) + " IS NOT NULL" +
+            " AND " + toEpochSecond(DatabaseDayEntry.COLUMN_NAME_LUNAR_RISE) + " IS NOT NULL" +
+            " AND " + toEpochSecond(DatabaseDayEntry.COLUMN_NAME_LUNAR_SET) + " IS NOT NULL" +
+            " ORDER BY " + DatabaseDayEntry._ID + " ASC;";
+
+    static final String SQL_MIGRATE_V1_DROP = "DROP TABLE IF EXISTS " + V1_TABLE_NAME;
 
     private DatabaseContract() {}
 
+    /** SQL expression converting an ISO-8601 date column to epoch days */
+    private static String toEpochDay(String column) {
+        return "(CAST(strftime('%s', " + column + ") AS " + INT_TYPE + ") / 86400)";
+    }
 
+    /** SQL expression converting an ISO-8601 instant column to epoch seconds */
+    private static String toEpochSecond(String column) {
+        return "CAST(strftime('%s', " + column + ") AS " + INT_TYPE + ")";
+    }
 }
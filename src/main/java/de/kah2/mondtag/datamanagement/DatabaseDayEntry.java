@@ -1,7 +1,7 @@
 package de.kah2.mondtag.datamanagement;
 
-import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
 import android.provider.BaseColumns;
 
 import java.time.Instant;
@@ -13,6 +13,8 @@ import de.kah2.zodiac.libZodiac4A.planetary.RiseSet;
 
 /**
  * This class is used to map libZodiac-data to database-entries.
+ * Dates are stored as epoch days and instants as epoch seconds.
+ * Days are stored per {@link LocationProfile} - see {@link DatabaseContract}.
  * Created by kahles on 04.10.16.
  */
 
@@ -20,6 +22,7 @@ class DatabaseDayEntry extends DayStorableDataSetPojo implements BaseColumns {
 
     public static final String TABLE_NAME = "DAY";
 
+    public static final String COLUMN_NAME_PROFILE = "PROFILE";
     public static final String COLUMN_NAME_DATE = "DATE";
     public static final String COLUMN_NAME_SUN_RISE = "SUN_RISE";
     public static final String COLUMN_NAME_SUN_SET = "SUN_SET";
@@ -32,46 +35,67 @@ class DatabaseDayEntry extends DayStorableDataSetPojo implements BaseColumns {
         super(day);
     }
 
-    DatabaseDayEntry(Cursor cursor) {
-        setDate(
-                LocalDate.parse(
-                    cursor.getString(
-                            cursor.getColumnIndexOrThrow(COLUMN_NAME_DATE)
-                    )
-                )
-        );
-        setLunarLongitude( cursor.getDouble(
-                cursor.getColumnIndexOrThrow(COLUMN_NAME_LUNAR_LONGITUDE)
-        ));
-        setLunarVisibility( cursor.getDouble(
-                cursor.getColumnIndexOrThrow(COLUMN_NAME_LUNAR_VISIBILITY)
-        ));
-        setLunarRiseSet( this.getRiseSet(cursor, COLUMN_NAME_LUNAR_RISE, COLUMN_NAME_LUNAR_SET) );
-        setSolarRiseSet( this.getRiseSet(cursor, COLUMN_NAME_SUN_RISE, COLUMN_NAME_SUN_SET) );
+    /**
+     * Reads an entry at the current position of a cursor.
+     * @param columns the column indexes resolved once for this cursor
+     */
+    DatabaseDayEntry(Cursor cursor, ColumnIndexes columns) {
+        setDate( LocalDate.ofEpochDay( cursor.getLong(columns.date) ) );
+        setLunarLongitude( cursor.getDouble(columns.lunarLongitude) );
+        setLunarVisibility( cursor.getDouble(columns.lunarVisibility) );
+        setLunarRiseSet( getRiseSet(cursor, columns.lunarRise, columns.lunarSet) );
+        setSolarRiseSet( getRiseSet(cursor, columns.sunRise, columns.sunSet) );
     }
 
-    private RiseSet getRiseSet(Cursor cursor, String columnNameRise, String columnNameSet) {
-        Instant rise = Instant.parse( cursor.getString(
-                // FIXME Better way than orThrow?
-                cursor.getColumnIndexOrThrow(columnNameRise)
-        ));
-        Instant set = Instant.parse( cursor.getString(
-                cursor.getColumnIndexOrThrow(columnNameSet)
-        ));
+    private static RiseSet getRiseSet(Cursor cursor, int columnRise, int columnSet) {
+        final Instant rise = Instant.ofEpochSecond( cursor.getLong(columnRise) );
+        final Instant set = Instant.ofEpochSecond( cursor.getLong(columnSet) );
         return new RiseSet(rise, set);
     }
 
-    ContentValues toContentValues() {
-        ContentValues result = new ContentValues();
+    /**
+     * Binds the values of this entry to a statement compiled from
+     * {@link DatabaseContract#SQL_INSERT_DAY}. Existing bindings get overwritten, so the statement
+     * can be reused for the next entry.
+     * @param profileId the id of the {@link LocationProfile} the day was calculated for
+     */
+    void bindTo(SQLiteStatement statement, long profileId) {
 
-        result.put(COLUMN_NAME_DATE, this.getDate().toString());
-        result.put(COLUMN_NAME_SUN_RISE, this.getSolarRiseSet().getRise().toString());
-        result.put(COLUMN_NAME_SUN_SET, this.getSolarRiseSet().getSet().toString());
-        result.put(COLUMN_NAME_LUNAR_RISE, this.getLunarRiseSet().getRise().toString());
-        result.put(COLUMN_NAME_LUNAR_SET, this.getLunarRiseSet().getSet().toString());
-        result.put(COLUMN_NAME_LUNAR_VISIBILITY, this.getLunarVisibility());
-        result.put(COLUMN_NAME_LUNAR_LONGITUDE, this.getLunarLongitude());
+        statement.bindLong(1, profileId);
+        statement.bindLong(2, this.getDate().toEpochDay());
+        statement.bindLong(3, this.getSolarRiseSet().getRise().getEpochSecond());
+        statement.bindLong(4, this.getSolarRiseSet().getSet().getEpochSecond());
+        statement.bindLong(5, this.getLunarRiseSet().getRise().getEpochSecond());
+        statement.bindLong(6, this.getLunarRiseSet().getSet().getEpochSecond());
+        statement.bindDouble(7, this.getLunarVisibility());
+        statement.bindDouble(8, this.getLunarLongitude());
+    }
+
+    /**
+     * Holds the indexes of all columns of a {@link Cursor}, so they don't need to be looked up for
+     * every row.
+     */
+    static class ColumnIndexes {
+
+        private final int date;
+        private final int sunRise;
+        private final int sunSet;
+        private final int lunarRise;
+        private final int lunarSet;
+        private final int lunarVisibility;
+        private final int lunarLongitude;
 
-        return result;
+        /**
+         * @throws IllegalArgumentException if a column doesn't exist
+         */
+        ColumnIndexes(Cursor cursor) {
+            this.date = cursor.getColumnIndexOrThrow(COLUMN_NAME_DATE);
+            this.sunRise = cursor.getColumnIndexOrThrow(COLUMN_NAME_SUN_RISE);
+            this.sunSet = cursor.getColumnIndexOrThrow(COLUMN_NAME_SUN_SET);
+            this.lunarRise = cursor.getColumnIndexOrThrow(COLUMN_NAME_LUNAR_RISE);
+            this.lunarSet = cursor.getColumnIndexOrThrow(COLUMN_NAME_LUNAR_SET);
+            this.lunarVisibility = cursor.getColumnIndexOrThrow(COLUMN_NAME_LUNAR_VISIBILITY);
+            this.lunarLongitude = cursor.getColumnIndexOrThrow(COLUMN_NAME_LUNAR_LONGITUDE);
+        }
     }
 }
@@ -3,39 +3,97 @@ package de.kah2.mondtag.datamanagement;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.preference.PreferenceManager;
+import android.util.Log;
 
 /**
  * Provides basic functions to handle the database.
+ * Should only be used through {@link DatabaseConnection}.
  *
  * Created by kahles on 30.09.16.
  */
 
 class DatabaseHelper extends SQLiteOpenHelper {
 
+    private final static String TAG = DatabaseHelper.class.getSimpleName();
+
     private final static String DATABASE_NAME = "de.kah2.mondtag.db";
-    private final static int DATABASE_VERSION = 1;
+    private final static int DATABASE_VERSION = 2;
+
+    private final Context context;
 
     public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    /** @param name the name of the database file - e.g. a separate one for tests */
+    DatabaseHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+
+        this.context = context;
+
+        // Allows reading while days are written in background
+        this.setWriteAheadLoggingEnabled(true);
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
-        db.execSQL(DatabaseContract.SQL_CREATE_TABLES);
+        for (String statement : DatabaseContract.SQL_CREATE_TABLES) {
+            db.execSQL(statement);
+        }
     }
 
+    /**
+     * Migrates existing data. This is called within a transaction, so a failing migration leaves
+     * the old data untouched.
+     */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        resetDatabase(db);
+
+        Log.i(TAG, "onUpgrade: migrating database from version " + oldVersion
+                + " to " + newVersion);
+
+        if (oldVersion < 2) {
+            this.migrateFromVersion1(db);
+        }
+    }
+
+    /**
+     * Converts the ISO-8601 text columns of version 1 to epoch days and epoch seconds and assigns
+     * the existing days to a {@link LocationProfile} of the current configuration. Missing or
+     * invalid preferences are replaced by the same defaults the app uses on startup, so no data is
+     * dropped.
+     */
+    private void migrateFromVersion1(SQLiteDatabase db) {
+
+        final LocationProfile profile = Configuration.load(this.context,
+                PreferenceManager.getDefaultSharedPreferences(this.context), null).getProfile();
+
+        db.execSQL(DatabaseContract.SQL_MIGRATE_V1_RENAME);
+
+        for (String statement : DatabaseContract.SQL_CREATE_TABLES) {
+            db.execSQL(statement);
+        }
+
+        final long profileId = db.insertOrThrow(DatabaseProfileEntry.TABLE_NAME, null,
+                DatabaseProfileEntry.toContentValues(profile));
+
+        Log.d(TAG, "migrateFromVersion1: assigning existing days to profile " + profile);
+
+        db.execSQL(DatabaseContract.SQL_MIGRATE_V1_COPY, new Object[] { profileId });
+        db.execSQL(DatabaseContract.SQL_MIGRATE_V1_DROP);
     }
 
     public void resetDatabase(SQLiteDatabase db) {
-        db.execSQL(DatabaseContract.SQL_DELETE_TABLES);
+        for (String statement : DatabaseContract.SQL_DELETE_TABLES) {
+            db.execSQL(statement);
+        }
         onCreate(db);
     }
 
     @Override
     public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        this.onUpgrade(db, oldVersion, newVersion);
+        // We don't know newer schemas - so we just start from scratch
+        this.resetDatabase(db);
     }
 }
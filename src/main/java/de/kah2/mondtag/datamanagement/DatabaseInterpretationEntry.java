@@ -0,0 +1,108 @@
+package de.kah2.mondtag.datamanagement;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+import android.provider.BaseColumns;
+import android.text.TextUtils;
+
+import java.time.LocalDate;
+
+import de.kah2.zodiac.libZodiac4A.Day;
+import de.kah2.zodiac.libZodiac4A.interpretation.Interpreter;
+import de.kah2.zodiac.libZodiac4A.interpretation.Interpreter.Quality;
+
+/**
+ * This class is used to map the results of {@link Interpreter}s to database-entries.
+ * Interpretations are stored per {@link LocationProfile} like rise and set times, so they are
+ * always based on the same data as the stored day and get evicted together with it.
+ * The quality is stored as ordinal, annotations as comma separated keys.
+ */
+class DatabaseInterpretationEntry implements BaseColumns {
+
+    public static final String TABLE_NAME = "INTERPRETATION";
+
+    public static final String COLUMN_NAME_PROFILE = DatabaseDayEntry.COLUMN_NAME_PROFILE;
+    public static final String COLUMN_NAME_DATE = DatabaseDayEntry.COLUMN_NAME_DATE;
+    /** See {@link StoredInterpretation#getInterpreterKey(Class)} */
+    public static final String COLUMN_NAME_INTERPRETER = "INTERPRETER";
+    public static final String COLUMN_NAME_QUALITY = "QUALITY";
+    public static final String COLUMN_NAME_ANNOTATIONS = "ANNOTATIONS";
+
+    private static final String ANNOTATION_SEPARATOR = ",";
+
+    private static final Quality[] QUALITIES = Quality.values();
+
+    private DatabaseInterpretationEntry() {}
+
+    /**
+     * Days generated in parallel chunks or written at a checkpoint might not know their lunar phase
+     * and zodiac direction yet, since these depend on the surrounding days.
+     * @return true if all data needed by the interpreters is available
+     */
+    static boolean isInterpretable(Day day) {
+        return day.getPlanetaryData().getLunarPhase() != null
+                && day.getZodiacData().getDirection() != null;
+    }
+
+    /**
+     * Binds the result of an interpreter to a statement compiled from
+     * {@link DatabaseContract#SQL_INSERT_INTERPRETATION}. Existing bindings get overwritten, so the
+     * statement can be reused for the next entry.
+     * @param interpreter an interpreter that already interpreted the day of the given date
+     */
+    static void bindTo(SQLiteStatement statement, long profileId, LocalDate date,
+                       String interpreterKey, Interpreter interpreter) {
+
+        statement.bindLong(1, profileId);
+        statement.bindLong(2, date.toEpochDay());
+        statement.bindString(3, interpreterKey);
+        statement.bindLong(4, interpreter.getQuality().ordinal());
+        statement.bindString(5, TextUtils.join(ANNOTATION_SEPARATOR,
+                interpreter.getAnnotationsAsStringArray()));
+    }
+
+    /**
+     * Reads an entry at the current position of a cursor.
+     * @param columns the column indexes resolved once for this cursor
+     * @return the entry or null if the stored quality is unknown
+     */
+    static StoredInterpretation read(Cursor cursor, ColumnIndexes columns) {
+
+        final int quality = cursor.getInt(columns.quality);
+
+        if (quality < 0 || quality >= QUALITIES.length) {
+            return null;
+        }
+
+        final String annotations = cursor.getString(columns.annotations);
+
+        return new StoredInterpretation(
+                LocalDate.ofEpochDay( cursor.getLong(columns.date) ),
+                cursor.getString(columns.interpreter),
+                QUALITIES[quality],
+                TextUtils.isEmpty(annotations) ?
+                        new String[0] : annotations.split(ANNOTATION_SEPARATOR) );
+    }
+
+    /**
+     * Holds the indexes of all columns of a {@link Cursor}, so they don't need to be looked up for
+     * every row.
+     */
+    static class ColumnIndexes {
+
+        private final int date;
+        private final int interpreter;
+        private final int quality;
+        private final int annotations;
+
+        /**
+         * @throws IllegalArgumentException if a column doesn't exist
+         */
+        ColumnIndexes(Cursor cursor) {
+            this.date = cursor.getColumnIndexOrThrow(COLUMN_NAME_DATE);
+            this.interpreter = cursor.getColumnIndexOrThrow(COLUMN_NAME_INTERPRETER);
+            this.quality = cursor.getColumnIndexOrThrow(COLUMN_NAME_QUALITY);
+            this.annotations = cursor.getColumnIndexOrThrow(COLUMN_NAME_ANNOTATIONS);
+        }
+    }
+}
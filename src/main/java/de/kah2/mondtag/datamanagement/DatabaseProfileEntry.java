@@ -0,0 +1,59 @@
+package de.kah2.mondtag.datamanagement;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.provider.BaseColumns;
+
+import java.time.ZoneId;
+
+/**
+ * This class is used to map {@link LocationProfile}s to database-entries.
+ * The rise and set times of a profile reference its {@link #_ID}.
+ */
+class DatabaseProfileEntry implements BaseColumns {
+
+    public static final String TABLE_NAME = "PROFILE";
+
+    public static final String COLUMN_NAME_KEY = "PROFILE_KEY";
+    public static final String COLUMN_NAME_NAME = "NAME";
+    public static final String COLUMN_NAME_LATITUDE = "LATITUDE";
+    public static final String COLUMN_NAME_LONGITUDE = "LONGITUDE";
+    public static final String COLUMN_NAME_ZONE = "ZONE";
+    /** Epoch milliseconds of the last activation - used for eviction */
+    public static final String COLUMN_NAME_LAST_USED = "LAST_USED";
+
+    private DatabaseProfileEntry() {}
+
+    /** Creates the values to insert or update a profile, which is used right now. */
+    static ContentValues toContentValues(LocationProfile profile) {
+
+        final ContentValues values = new ContentValues();
+
+        values.put(COLUMN_NAME_KEY, profile.getKey());
+        values.put(COLUMN_NAME_NAME, profile.getPosition().getName());
+        values.put(COLUMN_NAME_LATITUDE, profile.getPosition().getLatitude());
+        values.put(COLUMN_NAME_LONGITUDE, profile.getPosition().getLongitude());
+        values.put(COLUMN_NAME_ZONE, profile.getZone().getId());
+        values.put(COLUMN_NAME_LAST_USED, System.currentTimeMillis());
+
+        return values;
+    }
+
+    /**
+     * Reads a profile at the current position of a cursor.
+     * @throws IllegalArgumentException if a column doesn't exist or the position is invalid
+     * @throws java.time.DateTimeException if the zone is unknown
+     */
+    static LocationProfile read(Cursor cursor) {
+
+        final NamedGeoPosition position = new NamedGeoPosition(
+                cursor.getString( cursor.getColumnIndexOrThrow(COLUMN_NAME_NAME) ),
+                cursor.getDouble( cursor.getColumnIndexOrThrow(COLUMN_NAME_LATITUDE) ),
+                cursor.getDouble( cursor.getColumnIndexOrThrow(COLUMN_NAME_LONGITUDE) ) );
+
+        final ZoneId zone = ZoneId.of(
+                cursor.getString( cursor.getColumnIndexOrThrow(COLUMN_NAME_ZONE) ) );
+
+        return new LocationProfile(position, zone);
+    }
+}
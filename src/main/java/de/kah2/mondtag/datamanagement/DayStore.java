@@ -0,0 +1,508 @@
+package de.kah2.mondtag.datamanagement;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.kah2.mondtag.calendar.InterpreterManager;
+import de.kah2.mondtag.calendar.MappedInterpreter;
+import de.kah2.zodiac.libZodiac4A.DateRange;
+import de.kah2.zodiac.libZodiac4A.Day;
+import de.kah2.zodiac.libZodiac4A.DayStorableDataSet;
+import de.kah2.zodiac.libZodiac4A.interpretation.Interpreter;
+
+/**
+ * <p>Contains the synchronous database operations on stored days. These methods block and must
+ * only be called through {@link AsyncDataAccess}, which runs them on its I/O thread.</p>
+ * <p>Days are kept per {@link LocationProfile}. Profiles that weren't used recently are evicted as
+ * a whole when the stored days exceed a budget - see
+ * {@link #activateProfile(LocationProfile, DateRange)}. Only if the active profile exceeds the
+ * budget on its own, its oldest days outside the displayed window get deleted. Otherwise the user
+ * can browse back and forth without recalculation.</p>
+ * <p>The results of all interpreters are stored along with the days, so stored days can be
+ * displayed without running any interpreter - see {@link DatabaseInterpretationEntry}.</p>
+ */
+class DayStore {
+
+    private final static String TAG = DayStore.class.getSimpleName();
+
+    /**
+     * Maximum number of days written within one transaction. Larger batches need fewer commits,
+     * smaller ones block other database access for a shorter time.
+     */
+    final static int WRITE_BATCH_SIZE = 128;
+
+    /** Number of days kept for all profiles together */
+    private final static int PROFILE_BUDGET_DAYS = 2000;
+
+    private final DatabaseConnection database;
+
+    /** Returned by {@link #findProfileId(LocationProfile)} for profiles that aren't stored */
+    private final static long NO_PROFILE = -1;
+
+    /** Maps {@link LocationProfile#getKey()} to database ids - only used on the I/O thread */
+    private final Map<String, Long> profileIds = new HashMap<>();
+
+    DayStore(DatabaseConnection database) {
+        this.database = database;
+    }
+
+    /**
+     * Loads the days of a profile available within a {@link DateRange} from database.
+     */
+    List<DayStorableDataSet> load(LocationProfile profile, DateRange range) {
+
+        final List<DayStorableDataSet> result = new ArrayList<>();
+
+        final long profileId = this.findProfileId(profile);
+
+        if (profileId == NO_PROFILE) {
+            Log.d(TAG, "load: no days stored for " + profile);
+            return result;
+        }
+
+        try (Cursor cursor = this.database.get().rawQuery(DatabaseContract.SQL_SELECT_DAYS,
+                new String[] {
+                        Long.toString(profileId),
+                        Long.toString(range.getStart().toEpochDay()),
+                        Long.toString(range.getEnd().toEpochDay()) })) {
+
+            final DatabaseDayEntry.ColumnIndexes columns =
+                    new DatabaseDayEntry.ColumnIndexes(cursor);
+
+            while ( cursor.moveToNext() ) {
+                result.add( new DatabaseDayEntry(cursor, columns) );
+            }
+        }
+
+        Log.d(TAG, "load: read " + result.size() + " entries of " + profile + " between "
+                + range.getStart() + " and " + range.getEnd());
+
+        return result;
+    }
+
+    /**
+     * Loads the stored interpretations of a profile within a {@link DateRange}. Entries with an
+     * unknown quality are skipped - the affected days simply get interpreted again.
+     */
+    List<StoredInterpretation> loadInterpretations(LocationProfile profile, DateRange range) {
+
+        final List<StoredInterpretation> result = new ArrayList<>();
+
+        final long profileId = this.findProfileId(profile);
+
+        if (profileId == NO_PROFILE) {
+            return result;
+        }
+
+        try (Cursor cursor = this.database.get().rawQuery(
+                DatabaseContract.SQL_SELECT_INTERPRETATIONS,
+                new String[] {
+                        Long.toString(profileId),
+                        Long.toString(range.getStart().toEpochDay()),
+                        Long.toString(range.getEnd().toEpochDay()) })) {
+
+            final DatabaseInterpretationEntry.ColumnIndexes columns =
+                    new DatabaseInterpretationEntry.ColumnIndexes(cursor);
+
+            while ( cursor.moveToNext() ) {
+
+                final StoredInterpretation entry = DatabaseInterpretationEntry.read(cursor, columns);
+
+                if (entry != null) {
+                    result.add(entry);
+                }
+            }
+        }
+
+        Log.d(TAG, "loadInterpretations: read " + result.size() + " entries of " + profile);
+
+        return result;
+    }
+
+    /**
+     * Writes days to database. Each batch of days is written within one transaction using the same
+     * compiled statement. Transactions are non-exclusive, so reading isn't blocked meanwhile.
+     * Interpretations are written by {@link #writeMissingInterpretations(LocationProfile, List)}
+     * once the days are complete.
+     * @param profile the profile the days were calculated for
+     * @param entries snapshots of the days taken by the thread generating them
+     * @return the number of days written
+     * @see #WRITE_BATCH_SIZE
+     */
+    int write(LocationProfile profile, List<DatabaseDayEntry> entries) {
+
+        final long profileId = this.getOrCreateProfileId(profile);
+
+        final SQLiteDatabase db = this.database.get();
+        final SQLiteStatement dayStatement = db.compileStatement(DatabaseContract.SQL_INSERT_DAY);
+
+        int written = 0;
+
+        try {
+
+            final Iterator<DatabaseDayEntry> iterator = entries.iterator();
+
+            while (iterator.hasNext()) {
+
+                int batchCount = 0;
+
+                db.beginTransactionNonExclusive();
+
+                try {
+
+                    while (iterator.hasNext() && batchCount < WRITE_BATCH_SIZE) {
+
+                        iterator.next().bindTo(dayStatement, profileId);
+                        dayStatement.executeInsert();
+
+                        batchCount++;
+                    }
+
+                    db.setTransactionSuccessful();
+
+                } finally {
+                    db.endTransaction();
+                }
+
+                written += batchCount;
+            }
+
+        } finally {
+            dayStatement.close();
+        }
+
+        Log.d(TAG, "write: wrote " + written + " days using batches of " + WRITE_BATCH_SIZE);
+
+        return written;
+    }
+
+    /**
+     * Writes the interpretations of all days that don't have any stored yet within one
+     * transaction - meant to be called when generation is finished, since the days written at
+     * checkpoints might not have been complete back then and aren't modified anymore now.
+     * @param profile the profile the days were calculated for
+     * @param days the days of a calendar - incomplete ones are skipped
+     * @return the number of days interpreted
+     */
+    int writeMissingInterpretations(LocationProfile profile, List<Day> days) {
+
+        if (days.isEmpty()) {
+            return 0;
+        }
+
+        final long profileId = this.getOrCreateProfileId(profile);
+        final Set<LocalDate> interpreted = this.loadInterpretedDates(profileId, days);
+
+        final List<MappedInterpreter> interpreters = InterpreterManager.getInterpreters();
+
+        final SQLiteDatabase db = this.database.get();
+        final SQLiteStatement statement =
+                db.compileStatement(DatabaseContract.SQL_INSERT_INTERPRETATION);
+
+        int written = 0;
+
+        db.beginTransactionNonExclusive();
+
+        try {
+
+            for (Day day : days) {
+
+                if ( !interpreted.contains(day.getDate())
+                        && DatabaseInterpretationEntry.isInterpretable(day) ) {
+
+                    writeInterpretations(statement, profileId, day, interpreters);
+                    written++;
+                }
+            }
+
+            db.setTransactionSuccessful();
+
+        } finally {
+            db.endTransaction();
+            statement.close();
+        }
+
+        Log.d(TAG, "writeMissingInterpretations: interpreted " + written + " of "
+                + days.size() + " days");
+
+        return written;
+    }
+
+    /** @return the dates between the first and the last of the given days having interpretations */
+    private Set<LocalDate> loadInterpretedDates(long profileId, List<Day> days) {
+
+        LocalDate first = days.get(0).getDate();
+        LocalDate last = first;
+
+        for (Day day : days) {
+
+            if (day.getDate().isBefore(first)) {
+                first = day.getDate();
+            } else if (day.getDate().isAfter(last)) {
+                last = day.getDate();
+            }
+        }
+
+        final Set<LocalDate> dates = new HashSet<>();
+
+        try (Cursor cursor = this.database.get().rawQuery(
+                DatabaseContract.SQL_SELECT_INTERPRETED_DATES,
+                new String[] {
+                        Long.toString(profileId),
+                        Long.toString(first.toEpochDay()),
+                        Long.toString(last.toEpochDay()) })) {
+
+            while ( cursor.moveToNext() ) {
+                dates.add( LocalDate.ofEpochDay(cursor.getLong(0)) );
+            }
+        }
+
+        return dates;
+    }
+
+    /**
+     * Interprets a day by all interpreters and executes the insert statement for each result.
+     * Failing interpreters are skipped - their results get calculated when displayed.
+     */
+    private static void writeInterpretations(SQLiteStatement statement, long profileId, Day day,
+                                             List<MappedInterpreter> interpreters) {
+
+        for (MappedInterpreter mapping : interpreters) {
+
+            final Interpreter interpreter;
+
+            try {
+
+                interpreter = mapping.interpretUncached(day);
+
+            } catch (RuntimeException e) {
+
+                Log.e(TAG, "writeInterpretations: couldn't interpret using " + mapping.getKey(), e);
+                continue;
+            }
+
+            DatabaseInterpretationEntry.bindTo(statement, profileId, day.getDate(),
+                    mapping.getKey(), interpreter);
+            statement.executeInsert();
+        }
+    }
+
+    /**
+     * Marks a profile as most recently used - it gets created if it doesn't exist yet. Afterwards
+     * the least recently used profiles are evicted as a whole until the stored days fit into the
+     * budget. The given profile is never evicted, but if it exceeds the budget on its own, its
+     * oldest days outside the given window are deleted.
+     * @param window the dates of the profile's calendar, which are always kept
+     * @return the number of evicted profiles
+     * @see #PROFILE_BUDGET_DAYS
+     */
+    int activateProfile(LocationProfile profile, DateRange window) {
+
+        final SQLiteDatabase db = this.database.get();
+
+        // Created outside of the transaction, so the cached id stays valid in any case
+        final long profileId = this.getOrCreateProfileId(profile);
+
+        db.beginTransactionNonExclusive();
+
+        try {
+
+            db.update(DatabaseProfileEntry.TABLE_NAME,
+                    DatabaseProfileEntry.toContentValues(profile),
+                    DatabaseProfileEntry._ID + " = ?",
+                    new String[] { Long.toString(profileId) });
+
+            final int evicted = this.evictProfiles(db, profileId);
+            final int trimmed = this.trimProfile(db, profileId, window);
+
+            db.setTransactionSuccessful();
+
+            Log.d(TAG, "activateProfile: activated " + profile + ", evicted "
+                    + evicted + " profiles, trimmed " + trimmed + " days");
+
+            return evicted;
+
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Deletes least recently used profiles with their days and interpretations until the budget
+     * is met.
+     */
+    private int evictProfiles(SQLiteDatabase db, long activeProfileId) {
+
+        final List<Long> toEvict = new ArrayList<>();
+
+        try (Cursor cursor = db.rawQuery(DatabaseContract.SQL_SELECT_PROFILE_USAGE, null)) {
+
+            final int idColumn = cursor.getColumnIndexOrThrow(DatabaseProfileEntry._ID);
+            final int countColumn =
+                    cursor.getColumnIndexOrThrow(DatabaseContract.COLUMN_NAME_DAY_COUNT);
+
+            int storedDays = 0;
+
+            while (cursor.moveToNext()) {
+
+                final long id = cursor.getLong(idColumn);
+                storedDays += cursor.getInt(countColumn);
+
+                if (storedDays > PROFILE_BUDGET_DAYS && id != activeProfileId) {
+                    toEvict.add(id);
+                }
+            }
+        }
+
+        if (toEvict.isEmpty()) {
+            return 0;
+        }
+
+        for (Long id : toEvict) {
+
+            final String[] args = { Long.toString(id) };
+
+            db.delete(DatabaseDayEntry.TABLE_NAME,
+                    DatabaseDayEntry.COLUMN_NAME_PROFILE + " = ?", args);
+            db.delete(DatabaseInterpretationEntry.TABLE_NAME,
+                    DatabaseInterpretationEntry.COLUMN_NAME_PROFILE + " = ?", args);
+            db.delete(DatabaseProfileEntry.TABLE_NAME, DatabaseProfileEntry._ID + " = ?", args);
+        }
+
+        this.profileIds.values().removeAll(toEvict);
+
+        return toEvict.size();
+    }
+
+    /**
+     * Deletes the oldest days of a profile outside the window with their interpretations until the
+     * profile alone fits into the budget.
+     * @return the number of deleted days
+     */
+    private int trimProfile(SQLiteDatabase db, long profileId, DateRange window) {
+
+        final String id = Long.toString(profileId);
+
+        final long excess = DatabaseUtils.queryNumEntries(db, DatabaseDayEntry.TABLE_NAME,
+                DatabaseDayEntry.COLUMN_NAME_PROFILE + " = ?", new String[] { id })
+                - PROFILE_BUDGET_DAYS;
+
+        if (excess <= 0) {
+            return 0;
+        }
+
+        final String start = Long.toString( window.getStart().toEpochDay() );
+        final String end = Long.toString( window.getEnd().toEpochDay() );
+
+        final String outsideWindow = DatabaseDayEntry.COLUMN_NAME_PROFILE + " = ? AND ("
+                + DatabaseDayEntry.COLUMN_NAME_DATE + " < ? OR "
+                + DatabaseDayEntry.COLUMN_NAME_DATE + " > ?)";
+
+        // The date of the newest day to delete
+        final String lastDeleted;
+
+        try (Cursor cursor = db.query(DatabaseDayEntry.TABLE_NAME,
+                new String[] { DatabaseDayEntry.COLUMN_NAME_DATE }, outsideWindow,
+                new String[] { id, start, end }, null, null,
+                DatabaseDayEntry.COLUMN_NAME_DATE + " ASC", Long.toString(excess))) {
+
+            if ( !cursor.moveToLast() ) {
+                return 0;
+            }
+
+            lastDeleted = Long.toString( cursor.getLong(0) );
+        }
+
+        final String[] args = { id, start, end, lastDeleted };
+
+        db.delete(DatabaseInterpretationEntry.TABLE_NAME,
+                outsideWindow + " AND " + DatabaseInterpretationEntry.COLUMN_NAME_DATE + " <= ?",
+                args);
+
+        return db.delete(DatabaseDayEntry.TABLE_NAME,
+                outsideWindow + " AND " + DatabaseDayEntry.COLUMN_NAME_DATE + " <= ?", args);
+    }
+
+    /** @return all saved profiles, most recently used first */
+    List<LocationProfile> loadProfiles() {
+
+        final List<LocationProfile> profiles = new ArrayList<>();
+
+        try (Cursor cursor = this.database.get().query(DatabaseProfileEntry.TABLE_NAME,
+                null, null, null, null, null,
+                DatabaseProfileEntry.COLUMN_NAME_LAST_USED + " DESC")) {
+
+            while (cursor.moveToNext()) {
+
+                try {
+                    profiles.add( DatabaseProfileEntry.read(cursor) );
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "loadProfiles: skipping invalid profile", e);
+                }
+            }
+        }
+
+        return profiles;
+    }
+
+    /** @return the database id of a profile or {@link #NO_PROFILE} if it isn't stored */
+    private long findProfileId(LocationProfile profile) {
+
+        final String key = profile.getKey();
+
+        final Long cached = this.profileIds.get(key);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        try (Cursor cursor = this.database.get().query(DatabaseProfileEntry.TABLE_NAME,
+                new String[] { DatabaseProfileEntry._ID },
+                DatabaseProfileEntry.COLUMN_NAME_KEY + " = ?", new String[] { key },
+                null, null, null)) {
+
+            if ( !cursor.moveToFirst() ) {
+                return NO_PROFILE;
+            }
+
+            final long id = cursor.getLong(0);
+            this.profileIds.put(key, id);
+
+            return id;
+        }
+    }
+
+    /** Looks up the database id of a profile and creates the profile if it doesn't exist. */
+    private long getOrCreateProfileId(LocationProfile profile) {
+
+        long id = this.findProfileId(profile);
+
+        if (id == NO_PROFILE) {
+
+            id = this.database.get().insertOrThrow(DatabaseProfileEntry.TABLE_NAME, null,
+                    DatabaseProfileEntry.toContentValues(profile));
+            this.profileIds.put(profile.getKey(), id);
+
+            Log.d(TAG, "getOrCreateProfileId: created profile " + profile);
+        }
+
+        return id;
+    }
+
+    /** Closes the database connection - it gets reopened by the next operation. */
+    void close() {
+        this.database.close();
+    }
+}
@@ -0,0 +1,144 @@
+package de.kah2.mondtag.datamanagement;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.kah2.zodiac.libZodiac4A.Calendar;
+import de.kah2.zodiac.libZodiac4A.DateRange;
+import de.kah2.zodiac.libZodiac4A.Day;
+
+/**
+ * <p>Importing and generating days for a {@link Calendar} - every calendar created by
+ * {@link DataManager} gets its own job, which is run whenever days are missing.</p>
+ * <p>Each job has a generation token. When the configuration changes, the token is advanced, which
+ * makes the jobs of older calendars stale. Calendars that only cover another date range of the same
+ * configuration share the token. Stale jobs stop cooperatively at the next check and
+ * their results don't get persisted.</p>
+ * <p>A job can only run once at a time - see {@link #tryStart()}.</p>
+ * <p>A calendar is never modified once it's complete: its days get published as an immutable list,
+ * which is the only way the UI accesses them - see {@link #publishDays()}. Days added to a
+ * displayed calendar are generated by a new job, which starts with the days of the displayed one
+ * and replaces it when complete - see {@link #getExtendedJob()}.</p>
+ */
+class GenerationJob {
+
+    private final Calendar calendar;
+
+    private final LocationProfile profile;
+
+    private final long token;
+
+    private final AtomicLong currentToken;
+
+    private final GenerationJob extendedJob;
+
+    private final AtomicBoolean isRunning = new AtomicBoolean(false);
+
+    /** The valid days of the complete calendar - null until published */
+    private volatile List<Day> days = null;
+
+    /** The range loaded from database - only accessed while the job runs */
+    private DateRange importedRange = null;
+
+    /**
+     * @param profile the location and time zone the calendar is calculated for
+     * @param token the generation token of the calendar
+     * @param currentToken the source of the currently valid token
+     * @param extendedJob the job whose calendar is extended by this one or null if this calendar
+     *                    doesn't extend another one
+     */
+    GenerationJob(Calendar calendar, LocationProfile profile, long token, AtomicLong currentToken,
+                  @Nullable GenerationJob extendedJob) {
+        this.calendar = calendar;
+        this.profile = profile;
+        this.token = token;
+        this.currentToken = currentToken;
+        this.extendedJob = extendedJob;
+    }
+
+    Calendar getCalendar() {
+        return this.calendar;
+    }
+
+    LocationProfile getProfile() {
+        return this.profile;
+    }
+
+    long getToken() {
+        return this.token;
+    }
+
+    /** @return the job whose calendar is extended by this one or null if there is none */
+    @Nullable
+    GenerationJob getExtendedJob() {
+        return this.extendedJob;
+    }
+
+    /**
+     * Publishes the valid days of the calendar - must only be called by the generation thread when
+     * the calendar is complete. Later calls don't change the published days.
+     */
+    void publishDays() {
+
+        if (this.days == null) {
+            this.days = Collections.unmodifiableList( new ArrayList<>(this.calendar.getValidDays()) );
+        }
+    }
+
+    /**
+     * @return the published days sorted by date, which may be read by any thread - null if the
+     * calendar isn't complete yet
+     */
+    @Nullable
+    List<Day> getDays() {
+        return this.days;
+    }
+
+    /** @return the range already loaded from database or null if nothing was loaded yet */
+    DateRange getImportedRange() {
+        return this.importedRange;
+    }
+
+    void setImportedRange(DateRange importedRange) {
+        this.importedRange = importedRange;
+    }
+
+    /**
+     * Single-flight guard.
+     * @return true if the caller may run the job, false if it's already running
+     */
+    boolean tryStart() {
+        return this.isRunning.compareAndSet(false, true);
+    }
+
+    /** @return true between {@link #tryStart()} and {@link #finish()} */
+    boolean isRunning() {
+        return this.isRunning.get();
+    }
+
+    /** Must be called when a run started by {@link #tryStart()} ends */
+    void finish() {
+        this.isRunning.set(false);
+    }
+
+    /** @return true as long as the configuration this job was started for is still active */
+    boolean isCurrent() {
+        return this.token == this.currentToken.get();
+    }
+
+    /**
+     * Used at cancellation points of the job.
+     * @throws CancellationException if the job is stale
+     */
+    void throwIfStale() {
+        if ( !this.isCurrent() ) {
+            throw new CancellationException("Generation job " + this.token + " is stale");
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package de.kah2.mondtag.datamanagement;
+
+import java.time.ZoneId;
+
+import de.kah2.zodiac.libZodiac4A.LocationProvider;
+import de.kah2.zodiac.libZodiac4A.planetary.Position;
+
+/**
+ * <p>A saved location: an observer position and the time zone its days are calculated for.</p>
+ * <p>Each profile has its own rise and set times in the database, so switching back to a recently
+ * used profile doesn't need any calculation. Profiles are identified by {@link #getKey()} - the
+ * name of the position isn't part of it.</p>
+ * <p>Since profiles are immutable, each calendar uses its own profile as {@link LocationProvider}
+ * and isn't affected by configuration changes.</p>
+ */
+public class LocationProfile implements LocationProvider {
+
+    private final static String KEY_SEPARATOR = ",";
+
+    private final NamedGeoPosition position;
+
+    private final ZoneId zone;
+
+    public LocationProfile(NamedGeoPosition position, ZoneId zone) {
+        this.position = position;
+        this.zone = zone;
+    }
+
+    public NamedGeoPosition getPosition() {
+        return this.position;
+    }
+
+    public ZoneId getZone() {
+        return this.zone;
+    }
+
+    @Override
+    public Position getObserverPosition() {
+        return this.position;
+    }
+
+    @Override
+    public ZoneId getTimeZoneId() {
+        return this.zone;
+    }
+
+    /**
+     * @return a key identifying this profile in database - positions are compared using the
+     * precision of {@link NamedGeoPosition#getFormattedLatitude()}
+     */
+    String getKey() {
+        return this.position.getFormattedLatitude() + KEY_SEPARATOR
+                + this.position.getFormattedLongitude() + KEY_SEPARATOR
+                + this.zone.getId();
+    }
+
+    /** @return a string to display, e.g. in a list of saved profiles */
+    public String toFormattedString() {
+        return this.position.getName() + " (" + this.zone.getId() + ")";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof LocationProfile)) {
+            return false;
+        }
+
+        return this.getKey().equals( ((LocationProfile) o).getKey() );
+    }
+
+    @Override
+    public int hashCode() {
+        return this.getKey().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.position.toString() + KEY_SEPARATOR + this.zone.getId();
+    }
+}
@@ -0,0 +1,280 @@
+package de.kah2.mondtag.datamanagement;
+
+import android.util.Log;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.kah2.zodiac.libZodiac4A.Calendar;
+import de.kah2.zodiac.libZodiac4A.DateRange;
+import de.kah2.zodiac.libZodiac4A.Day;
+import de.kah2.zodiac.libZodiac4A.DayStorableDataSet;
+import de.kah2.zodiac.libZodiac4A.ProgressListener;
+
+/**
+ * <p>Generates the days missing in a {@link Calendar} using multiple cores: The missing ranges
+ * are split into contiguous chunks, which are calculated by separate {@link Calendar} instances on
+ * a bounded thread pool.</p>
+ * <p>Each finished chunk is passed to a {@link WriteBehindQueue}. When all chunks are done, their days are
+ * imported into the target calendar in date order. Progress is reported per finished chunk.</p>
+ * <p>If a chunk fails, the days of unfinished chunks are simply left missing, so they get generated
+ * by the target calendar itself.</p>
+ */
+class ParallelDayGenerator {
+
+    private final static String TAG = ParallelDayGenerator.class.getSimpleName();
+
+    /** Chunks aren't made smaller than this - ranges below twice this size aren't split at all */
+    final static int MIN_DAYS_PER_CHUNK = 14;
+
+    private final static String THREAD_NAME_PREFIX = "mondtag-generator-";
+
+    private final ProgressListener progressListener;
+
+    private final int parallelism;
+
+    private ExecutorService pool;
+
+    ParallelDayGenerator(ProgressListener progressListener) {
+
+        this.progressListener = progressListener;
+        this.parallelism = Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Generates missing days of the expected range of the job's calendar and imports them into it.
+     * Blocks until all chunks are done.
+     * @return the number of days imported into the calendar - 0 if there weren't enough missing
+     * days to make parallel generation worthwhile
+     * @param writeQueue persists the days of finished chunks
+     * @throws java.util.concurrent.CancellationException if the job got stale
+     */
+    int generateMissingDays(GenerationJob job, WriteBehindQueue writeQueue) {
+
+        final Calendar calendar = job.getCalendar();
+
+        final List<DateRange> chunks = this.createChunks( findMissingRanges(calendar) );
+
+        if (chunks.size() < 2) {
+            Log.d(TAG, "generateMissingDays: not enough missing days - skipping");
+            return 0;
+        }
+
+        Log.d(TAG, "generateMissingDays: generating " + chunks.size() + " chunks using "
+                + this.parallelism + " threads");
+
+        this.progressListener.onStateChanged(ProgressListener.State.GENERATING);
+
+        final CompletionService<ChunkResult> completionService =
+                new ExecutorCompletionService<>( this.getPool() );
+
+        final List<Future<ChunkResult>> futures = new ArrayList<>(chunks.size());
+
+        for (int i = 0; i < chunks.size(); i++) {
+            final int index = i;
+            final DateRange chunk = chunks.get(i);
+            futures.add( completionService.submit(
+                    () -> new ChunkResult(index, generateChunk(job.getProfile(), chunk)) ) );
+        }
+
+        final List<List<Day>> results = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            results.add(null);
+        }
+
+        try {
+
+            for (int done = 1; done <= chunks.size(); done++) {
+
+                final ChunkResult result = completionService.take().get();
+
+                if ( !job.isCurrent() ) {
+                    cancelAll(futures);
+                    job.throwIfStale();
+                }
+
+                results.set(result.index, result.days);
+
+                writeQueue.offer(result.days);
+
+                this.progressListener.onCalculationProgress( done / (float) chunks.size() );
+            }
+
+        } catch (ExecutionException e) {
+
+            Log.e(TAG, "generateMissingDays: chunk failed - leaving days to calendar", e.getCause());
+            cancelAll(futures);
+
+        } catch (InterruptedException e) {
+
+            Log.w(TAG, "generateMissingDays: interrupted");
+            cancelAll(futures);
+            Thread.currentThread().interrupt();
+        }
+
+        job.throwIfStale();
+
+        return importInOrder(calendar, results);
+    }
+
+    /** Calculates the days of a chunk using a separate calendar for the profile of the job. */
+    private static List<Day> generateChunk(LocationProfile profile, DateRange chunk) {
+
+        // DAY scope suffices, since only storable data is needed - phases and counts are
+        // calculated by the target calendar.
+        final Calendar chunkCalendar =
+                new Calendar(chunk, Calendar.Scope.DAY, profile);
+
+        chunkCalendar.startGeneration();
+
+        final List<Day> days = new ArrayList<>();
+
+        for (Day day : chunkCalendar.getNewlyGenerated()) {
+            final LocalDate date = day.getDate();
+            if ( !date.isBefore(chunk.getStart()) && !date.isAfter(chunk.getEnd()) ) {
+                days.add(day);
+            }
+        }
+
+        return days;
+    }
+
+    /** Imports the results of all successful chunks in date order. */
+    private static int importInOrder(Calendar calendar, List<List<Day>> results) {
+
+        final List<DayStorableDataSet> merged = new ArrayList<>();
+
+        for (List<Day> days : results) {
+
+            if (days == null) {
+                continue;
+            }
+
+            for (Day day : days) {
+                merged.add( new DatabaseDayEntry(day) );
+            }
+        }
+
+        calendar.importDays(merged);
+
+        Log.d(TAG, "importInOrder: imported " + merged.size() + " days");
+
+        return merged.size();
+    }
+
+    /** Finds the contiguous ranges of days missing in the expected range of a calendar. */
+    private static List<DateRange> findMissingRanges(Calendar calendar) {
+
+        final DateRange expected = calendar.getRangeExpected();
+        final List<DateRange> missing = new ArrayList<>();
+
+        LocalDate missingStart = null;
+        LocalDate date = expected.getStart();
+
+        while ( !date.isAfter(expected.getEnd()) ) {
+
+            final boolean isMissing = calendar.get(date) == null;
+
+            if (isMissing && missingStart == null) {
+                missingStart = date;
+            } else if (!isMissing && missingStart != null) {
+                missing.add( new DateRange(missingStart, date.minusDays(1)) );
+                missingStart = null;
+            }
+
+            date = date.plusDays(1);
+        }
+
+        if (missingStart != null) {
+            missing.add( new DateRange(missingStart, expected.getEnd()) );
+        }
+
+        return missing;
+    }
+
+    /**
+     * Splits the ranges into chunks, so that all threads get about the same amount of work.
+     */
+    private List<DateRange> createChunks(List<DateRange> ranges) {
+
+        long missingDays = 0;
+        for (DateRange range : ranges) {
+            missingDays += countDays(range);
+        }
+
+        final long chunkSize = Math.max( MIN_DAYS_PER_CHUNK,
+                (missingDays + this.parallelism - 1) / this.parallelism );
+
+        final List<DateRange> chunks = new ArrayList<>();
+
+        for (DateRange range : ranges) {
+
+            LocalDate start = range.getStart();
+
+            while ( !start.isAfter(range.getEnd()) ) {
+
+                LocalDate end = start.plusDays(chunkSize - 1);
+                if ( end.isAfter(range.getEnd()) ) {
+                    end = range.getEnd();
+                }
+
+                chunks.add( new DateRange(start, end) );
+                start = end.plusDays(1);
+            }
+        }
+
+        return chunks;
+    }
+
+    private static long countDays(DateRange range) {
+        return ChronoUnit.DAYS.between(range.getStart(), range.getEnd()) + 1;
+    }
+
+    private static void cancelAll(List<Future<ChunkResult>> futures) {
+        for (Future<ChunkResult> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    private synchronized ExecutorService getPool() {
+
+        if (this.pool == null) {
+
+            final AtomicInteger threadCount = new AtomicInteger();
+
+            this.pool = Executors.newFixedThreadPool(this.parallelism, runnable -> {
+                final Thread thread = new Thread(() -> {
+                    android.os.Process.setThreadPriority(
+                            android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return this.pool;
+    }
+
+    /** Days of a chunk and its position to be able to merge them in date order */
+    private static class ChunkResult {
+
+        private final int index;
+        private final List<Day> days;
+
+        private ChunkResult(int index, List<Day> days) {
+            this.index = index;
+            this.days = days;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package de.kah2.mondtag.datamanagement;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.kah2.zodiac.libZodiac4A.interpretation.Interpreter;
+import de.kah2.zodiac.libZodiac4A.interpretation.Interpreter.Quality;
+
+/**
+ * The untranslated result of an {@link Interpreter} as it's stored in database - see
+ * {@link DatabaseInterpretationEntry}. Allows displaying interpretations of stored days without
+ * running any interpreter.
+ */
+public class StoredInterpretation {
+
+    private final LocalDate date;
+
+    private final String interpreterKey;
+
+    private final Quality quality;
+
+    private final List<String> annotationKeys;
+
+    StoredInterpretation(LocalDate date, String interpreterKey, Quality quality,
+                         String[] annotationKeys) {
+        this.date = date;
+        this.interpreterKey = interpreterKey;
+        this.quality = quality;
+        this.annotationKeys = Collections.unmodifiableList( Arrays.asList(annotationKeys) );
+    }
+
+    public LocalDate getDate() {
+        return this.date;
+    }
+
+    /**
+     * @return the key of the interpreter that created this result
+     * @see #getInterpreterKey(Class)
+     */
+    public String getInterpreterKey() {
+        return this.interpreterKey;
+    }
+
+    public Quality getQuality() {
+        return this.quality;
+    }
+
+    /** @return the annotations as returned by {@link Interpreter#getAnnotationsAsStringArray()} */
+    public List<String> getAnnotationKeys() {
+        return this.annotationKeys;
+    }
+
+    /**
+     * @return the key an interpreter is stored with - its class name, which stays the same
+     * across app updates in contrast to resource ids
+     */
+    public static String getInterpreterKey(Class<? extends Interpreter> interpreterClass) {
+        return interpreterClass.getName();
+    }
+}
@@ -0,0 +1,95 @@
+package de.kah2.mondtag.datamanagement;
+
+import android.util.Log;
+
+import java.time.LocalDate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import de.kah2.zodiac.libZodiac4A.Day;
+
+/**
+ * <p>Collects days while they are generated and writes them to database in small batches, so
+ * they aren't lost if the process gets killed during a long generation. A restarted job imports
+ * the written days and only generates what's still missing.</p>
+ * <p>Every date is only queued once, so the whole list of newly generated days can be passed
+ * repeatedly. Writes are dropped if the job got stale in the meantime.</p>
+ */
+class WriteBehindQueue {
+
+    private final static String TAG = WriteBehindQueue.class.getSimpleName();
+
+    /** Number of days written per checkpoint */
+    private final static int CHECKPOINT_SIZE = 14;
+
+    private final AsyncDataAccess dataAccess;
+
+    private final GenerationJob job;
+
+    private final HashSet<LocalDate> queuedDates = new HashSet<>();
+
+    /** Snapshots of the queued days, so the I/O thread never reads days still being generated */
+    private List<DatabaseDayEntry> pending;
+
+    /** Size of the last list passed to {@link #offerNewlyGenerated(Collection)} */
+    private int lastNewlyGeneratedSize = 0;
+
+    WriteBehindQueue(AsyncDataAccess dataAccess, GenerationJob job) {
+        this.dataAccess = dataAccess;
+        this.job = job;
+        this.pending = new ArrayList<>(CHECKPOINT_SIZE);
+    }
+
+    /**
+     * Queues snapshots of all days that weren't queued before and writes them as soon as a
+     * checkpoint is reached. Must be called by the thread generating the days.
+     */
+    synchronized void offer(Collection<Day> days) {
+
+        for (Day day : days) {
+
+            if ( this.queuedDates.add(day.getDate()) ) {
+
+                this.pending.add( new DatabaseDayEntry(day) );
+
+                if (this.pending.size() >= CHECKPOINT_SIZE) {
+                    this.flush();
+                }
+            }
+        }
+    }
+
+    /**
+     * Like {@link #offer(Collection)}, but skips the list if its size didn't change since the last
+     * call - meant for the growing list of a calendar's newly generated days.
+     */
+    synchronized void offerNewlyGenerated(Collection<Day> newlyGenerated) {
+
+        if (newlyGenerated.size() != this.lastNewlyGeneratedSize) {
+
+            this.lastNewlyGeneratedSize = newlyGenerated.size();
+            this.offer(newlyGenerated);
+        }
+    }
+
+    /** @return true if this queue persists the days of the given job */
+    boolean belongsTo(GenerationJob job) {
+        return this.job == job;
+    }
+
+    /** Writes all pending days. */
+    synchronized void flush() {
+
+        if (this.pending.isEmpty()) {
+            return;
+        }
+
+        Log.d(TAG, "flush: writing checkpoint of " + this.pending.size() + " days");
+
+        this.dataAccess.write(this.job.getProfile(), this.pending, this.job::isCurrent, null);
+        this.pending = new ArrayList<>(CHECKPOINT_SIZE);
+    }
+}
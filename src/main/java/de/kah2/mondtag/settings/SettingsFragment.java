@@ -10,9 +10,12 @@ import androidx.preference.PreferenceFragmentCompat;
 import android.util.Log;
 import android.view.MenuItem;
 
+import java.util.List;
+
 import de.kah2.mondtag.Mondtag;
 import de.kah2.mondtag.MondtagActivity;
 import de.kah2.mondtag.R;
+import de.kah2.mondtag.datamanagement.LocationProfile;
 import de.kah2.mondtag.settings.location.LocationPreference;
 import de.kah2.mondtag.settings.location.LocationPrefDialogFragment;
 
@@ -35,6 +38,8 @@ public class SettingsFragment extends PreferenceFragmentCompat
 
         this.initTimezonesList();
 
+        this.initSavedLocationsList();
+
         this.setupActionBar();
 
         // set summaries
@@ -81,6 +86,63 @@ public class SettingsFragment extends PreferenceFragmentCompat
         tzList.setEntryValues(TimeZonesArrayGenerator.getZoneIds());
     }
 
+    /**
+     * Loads the saved {@link LocationProfile}s in background and offers them in a
+     * {@link ListPreference}. Choosing one sets location and timezone at once.
+     */
+    private void initSavedLocationsList() {
+
+        final ListPreference profileList = (ListPreference) findPreference(
+                getString(R.string.pref_key_saved_location) );
+
+        final MondtagActivity activity = (MondtagActivity) this.getActivity();
+
+        if (activity == null) {
+            Log.e(TAG, "initSavedLocationsList: activity is null");
+            return;
+        }
+
+        ((Mondtag) activity.getApplicationContext()).getDataManager().loadProfiles(
+                profiles -> this.onProfilesLoaded(profileList, profiles) );
+    }
+
+    private void onProfilesLoaded(ListPreference profileList, List<LocationProfile> profiles) {
+
+        if (!this.isAdded() || profiles.isEmpty()) {
+            return;
+        }
+
+        final String[] entries = new String[profiles.size()];
+        final String[] values = new String[profiles.size()];
+
+        for (int i = 0; i < profiles.size(); i++) {
+            entries[i] = profiles.get(i).toFormattedString();
+            values[i] = Integer.toString(i);
+        }
+
+        profileList.setEntries(entries);
+        profileList.setEntryValues(values);
+        profileList.setEnabled(true);
+
+        profileList.setOnPreferenceChangeListener( (preference, newValue) -> {
+
+            final LocationProfile profile = profiles.get( Integer.parseInt((String) newValue) );
+            Log.d(TAG, "onPreferenceChange: switching to profile " + profile);
+
+            final LocationPreference locPref = (LocationPreference) findPreference(
+                    getString(R.string.pref_key_location) );
+            final ListPreference tzList = (ListPreference) findPreference(
+                    getString(R.string.pref_key_timezone) );
+
+            // Both changes are delivered to #onSharedPreferenceChanged
+            locPref.setPosition( profile.getPosition() );
+            tzList.setValue( profile.getZone().getId() );
+
+            // The list itself isn't persisted
+            return false;
+        });
+    }
+
     private void setupActionBar() {
 
         final MondtagActivity mondtagActivity = (MondtagActivity) getActivity();
@@ -125,6 +187,14 @@ public class SettingsFragment extends PreferenceFragmentCompat
 
         getPreferenceScreen().getSharedPreferences()
                 .registerOnSharedPreferenceChangeListener(this);
+
+        final MondtagActivity activity = (MondtagActivity) this.getActivity();
+
+        if (activity == null) {
+            Log.e(TAG, "onResume: can't begin config transaction - activity is null");
+        } else {
+            ((Mondtag) activity.getApplicationContext()).getDataManager().beginConfigTransaction();
+        }
     }
 
     @Override
@@ -147,22 +217,7 @@ public class SettingsFragment extends PreferenceFragmentCompat
             Log.d(TAG, "onSharedPreferenceChanged: setting " + key + " to " + listPref.getEntry());
         }
 
-        // if any value is changed, it is delivered through sharedPreferences
-        // if nothing changed, it's null
-        if (sharedPreferences != null) {
-
-            Log.d(TAG, "onSharedPreferenceChanged: resetting calendar");
-
-            final MondtagActivity activity = (MondtagActivity) this.getActivity();
-
-            if (activity == null) {
-                Log.e(TAG,
-                    "onSharedPreferenceChanged: can't reset calendar - activity is null");
-            } else {
-
-                ((Mondtag) activity.getApplicationContext()).getDataManager().resetCalendar();
-            }
-        }
+        // The calendar is updated when settings are left - see DataManager#commitConfigTransaction
     }
 
     /**
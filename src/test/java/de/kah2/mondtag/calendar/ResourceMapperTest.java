@@ -0,0 +1,98 @@
+package de.kah2.mondtag.calendar;
+
+import org.junit.Test;
+
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that all constants of libZodiac have resources and that the cached formatters of
+ * {@link ResourceMapper} are reused as long as their settings don't change and are replaced as soon
+ * as one of them does.
+ */
+public class ResourceMapperTest {
+
+    private final static ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+    private final static ZoneId TOKYO = ZoneId.of("Asia/Tokyo");
+
+    private final static String PATTERN_24H = "HH:mm";
+    private final static String PATTERN_12H = "h:mm a";
+
+    @Test
+    public void allConstantsHaveResources() {
+        assertEquals( Collections.emptyList(), ResourceMapper.getMissingResources() );
+    }
+
+    @Test
+    public void dateFormattersAreCachedPerLocale() {
+
+        final ResourceMapper.DateFormatters german = ResourceMapper.getDateFormatters(Locale.GERMAN);
+
+        assertSame( german, ResourceMapper.getDateFormatters(Locale.GERMAN) );
+
+        final ResourceMapper.DateFormatters english =
+                ResourceMapper.getDateFormatters(Locale.ENGLISH);
+
+        assertNotSame(german, english);
+        assertEquals(Locale.ENGLISH, english.locale);
+    }
+
+    @Test
+    public void timeFormatterIsReusedForSameSettings() {
+
+        final ResourceMapper.TimeFormatter first =
+                ResourceMapper.getTimeFormatter(Locale.GERMAN, BERLIN, true, () -> PATTERN_24H);
+
+        final ResourceMapper.TimeFormatter second = ResourceMapper.getTimeFormatter(
+                Locale.GERMAN, BERLIN, true, () -> {
+                    throw new AssertionError("Pattern requested for a cached formatter");
+                });
+
+        assertSame(first, second);
+    }
+
+    @Test
+    public void timeFormatterIsReplacedWhenLocaleChanges() {
+
+        final ResourceMapper.TimeFormatter german =
+                ResourceMapper.getTimeFormatter(Locale.GERMAN, BERLIN, true, () -> PATTERN_24H);
+
+        final ResourceMapper.TimeFormatter english =
+                ResourceMapper.getTimeFormatter(Locale.ENGLISH, BERLIN, true, () -> PATTERN_24H);
+
+        assertNotSame(german, english);
+        assertEquals(Locale.ENGLISH, english.locale);
+    }
+
+    @Test
+    public void timeFormatterIsReplacedWhenZoneChanges() {
+
+        final ResourceMapper.TimeFormatter berlin =
+                ResourceMapper.getTimeFormatter(Locale.GERMAN, BERLIN, true, () -> PATTERN_24H);
+
+        final ResourceMapper.TimeFormatter tokyo =
+                ResourceMapper.getTimeFormatter(Locale.GERMAN, TOKYO, true, () -> PATTERN_24H);
+
+        assertNotSame(berlin, tokyo);
+        assertEquals(TOKYO, tokyo.formatter.getZone());
+    }
+
+    @Test
+    public void timeFormatterIsReplacedWhen24HourSettingChanges() {
+
+        final ResourceMapper.TimeFormatter hours24 =
+                ResourceMapper.getTimeFormatter(Locale.GERMAN, BERLIN, true, () -> PATTERN_24H);
+
+        final ResourceMapper.TimeFormatter hours12 =
+                ResourceMapper.getTimeFormatter(Locale.GERMAN, BERLIN, false, () -> PATTERN_12H);
+
+        assertNotSame(hours24, hours12);
+        assertFalse(hours12.is24Hour);
+    }
+}